@@ -25,6 +25,27 @@ public class AppConfig {
     @JsonProperty("PROXY")
     public Map<String, String> proxy = new HashMap<>();
 
+    @JsonProperty("LARGE_FILE_THRESHOLD_MB")
+    public long largeFileThresholdMb = 64;
+
+    @JsonProperty("PAGE_CACHE_MB")
+    public long pageCacheMb = 192;
+
+    @JsonProperty("RENDER_THREADS")
+    public int renderThreads = 1;
+
+    @JsonProperty("THUMBNAIL_CACHE_MB")
+    public long thumbnailCacheMb = 100;
+
+    @JsonProperty("PKCS11_SESSION_IDLE_MINUTES")
+    public int pkcs11SessionIdleMinutes = 10;
+
+    @JsonProperty("PFX_UNLOCK_CACHE_MINUTES")
+    public int pfxUnlockCacheMinutes = 5;
+
+    @JsonProperty("TSA_HEDGE_AFTER_MS")
+    public long tsaHedgeAfterMs = 3000;
+
 
     public Map<String, String> getTimestampServer() {
         return timestampServer;
@@ -50,6 +71,62 @@ public class AppConfig {
         this.softHSM = softHSM;
     }
 
+    public long getLargeFileThresholdMb() {
+        return largeFileThresholdMb;
+    }
+
+    public void setLargeFileThresholdMb(long largeFileThresholdMb) {
+        this.largeFileThresholdMb = largeFileThresholdMb;
+    }
+
+    public long getPageCacheMb() {
+        return pageCacheMb;
+    }
+
+    public void setPageCacheMb(long pageCacheMb) {
+        this.pageCacheMb = pageCacheMb;
+    }
+
+    public int getRenderThreads() {
+        return renderThreads;
+    }
+
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
+    public long getThumbnailCacheMb() {
+        return thumbnailCacheMb;
+    }
+
+    public void setThumbnailCacheMb(long thumbnailCacheMb) {
+        this.thumbnailCacheMb = thumbnailCacheMb;
+    }
+
+    public int getPkcs11SessionIdleMinutes() {
+        return pkcs11SessionIdleMinutes;
+    }
+
+    public void setPkcs11SessionIdleMinutes(int pkcs11SessionIdleMinutes) {
+        this.pkcs11SessionIdleMinutes = pkcs11SessionIdleMinutes;
+    }
+
+    public int getPfxUnlockCacheMinutes() {
+        return pfxUnlockCacheMinutes;
+    }
+
+    public void setPfxUnlockCacheMinutes(int pfxUnlockCacheMinutes) {
+        this.pfxUnlockCacheMinutes = pfxUnlockCacheMinutes;
+    }
+
+    public long getTsaHedgeAfterMs() {
+        return tsaHedgeAfterMs;
+    }
+
+    public void setTsaHedgeAfterMs(long tsaHedgeAfterMs) {
+        this.tsaHedgeAfterMs = tsaHedgeAfterMs;
+    }
+
     public Map<String, Boolean> getActiveStore() {
         return activeStore;
     }
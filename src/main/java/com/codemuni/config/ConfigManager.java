@@ -184,4 +184,108 @@ public class ConfigManager extends FileUtils {
         return writeConfig(config);
     }
 
+    // ──────────────────────────────
+// Large File Handling
+// ──────────────────────────────
+    public static long getLargeFileThresholdBytes() {
+        return Math.max(0, readConfig().largeFileThresholdMb) * 1024L * 1024L;
+    }
+
+    public static boolean setLargeFileThresholdMb(long thresholdMb) {
+        AppConfig config = readConfig();
+        config.setLargeFileThresholdMb(thresholdMb);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// Page Image Cache
+// ──────────────────────────────
+    public static long getPageCacheBytes() {
+        return Math.max(0, readConfig().pageCacheMb) * 1024L * 1024L;
+    }
+
+    public static boolean setPageCacheMb(long cacheMb) {
+        AppConfig config = readConfig();
+        config.setPageCacheMb(cacheMb);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// Page Rendering Threads
+// ──────────────────────────────
+    public static int getRenderThreads() {
+        int threads = readConfig().renderThreads;
+        return threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    public static boolean setRenderThreads(int threads) {
+        AppConfig config = readConfig();
+        config.setRenderThreads(threads);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// Thumbnail Disk Cache
+// ──────────────────────────────
+    public static long getThumbnailCacheBytes() {
+        return Math.max(0, readConfig().thumbnailCacheMb) * 1024L * 1024L;
+    }
+
+    public static boolean setThumbnailCacheMb(long cacheMb) {
+        AppConfig config = readConfig();
+        config.setThumbnailCacheMb(cacheMb);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// PKCS#11 Session Reuse
+// ──────────────────────────────
+
+    /**
+     * Idle time after which a logged-in token session is logged out; 0 disables session reuse.
+     */
+    public static long getPkcs11SessionIdleMillis() {
+        return Math.max(0, readConfig().pkcs11SessionIdleMinutes) * 60_000L;
+    }
+
+    public static boolean setPkcs11SessionIdleMinutes(int minutes) {
+        AppConfig config = readConfig();
+        config.setPkcs11SessionIdleMinutes(minutes);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// Unlocked PFX Cache
+// ──────────────────────────────
+
+    /**
+     * How long an unlocked PFX file is kept in memory after its password was entered; 0 disables the cache.
+     */
+    public static long getPfxUnlockCacheMillis() {
+        return Math.max(0, readConfig().pfxUnlockCacheMinutes) * 60_000L;
+    }
+
+    public static boolean setPfxUnlockCacheMinutes(int minutes) {
+        AppConfig config = readConfig();
+        config.setPfxUnlockCacheMinutes(minutes);
+        return writeConfig(config);
+    }
+
+    // ──────────────────────────────
+// Timestamp Failover
+// ──────────────────────────────
+
+    /**
+     * How long a timestamp server may take before the request is also sent to the next configured one.
+     */
+    public static long getTsaHedgeAfterMillis() {
+        return Math.max(0, readConfig().tsaHedgeAfterMs);
+    }
+
+    public static boolean setTsaHedgeAfterMs(long millis) {
+        AppConfig config = readConfig();
+        config.setTsaHedgeAfterMs(millis);
+        return writeConfig(config);
+    }
+
 }
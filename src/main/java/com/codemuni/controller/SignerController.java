@@ -13,6 +13,8 @@ import com.codemuni.gui.SignatureAppearanceDialog;
 import com.codemuni.gui.SmartCardCallbackHandler;
 import com.codemuni.gui.pdfHandler.PdfViewerMain;
 import com.codemuni.model.KeystoreAndCertificateInfo;
+import com.codemuni.service.CertificateDiscoveryService;
+import com.codemuni.service.CertificateInventoryCache;
 import com.codemuni.service.PdfSignerService;
 import com.codemuni.utils.AppConstants;
 import com.itextpdf.text.BadElementException;
@@ -21,6 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.security.KeyStoreException;
@@ -28,9 +31,12 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -40,11 +46,13 @@ public class SignerController {
     private static final Log log = LogFactory.getLog(SignerController.class);
     private final PKCS11KeyStoreProvider pkcs11KeyStoreProvider = new PKCS11KeyStoreProvider();
     private final PdfSignerService signerService = new PdfSignerService();
+    private final CertificateDiscoveryService discoveryService = new CertificateDiscoveryService();
+    private final CertificateInventoryCache certificateInventory =
+            new CertificateInventoryCache(AppConstants.CERTIFICATE_INVENTORY_FILE_PATH);
     private File selectedFile;
     private String pdfPassword;
     private int pageNumber;
     private int[] coordinates;
-    private List<KeystoreAndCertificateInfo> keystoreAndCertificateInfos;
     private KeystoreAndCertificateInfo keystoreAndCertificateInfo;
     private PKCS12KeyStoreProvider pkcs12KeyStoreProvider;
 
@@ -74,15 +82,14 @@ public class SignerController {
      * Execution stops gracefully if the user cancels at any stage.
      */
     public void startSigningService() throws KeyStoreException, IOException, CertificateException, CertificateNotFoundException, UnsupportedCallbackException, NoSuchAlgorithmException, IncorrectPINException {
-        loadValidCertificates();
-
-        if (keystoreAndCertificateInfos.isEmpty()) {
-            log.error("No valid certificates were found in the keystore. Prompting user to select a PFX certificate.");
+        CertificateListDialog certDialog = new CertificateListDialog(PdfViewerMain.INSTANCE, new ArrayList<>());
+        Future<?> discovery = discoverValidCertificates(certDialog);
+        try {
+            certDialog.setVisible(true); // modal; certificates stream in while it is open
+        } finally {
+            discovery.cancel(true);
         }
 
-        CertificateListDialog certDialog = new CertificateListDialog(PdfViewerMain.INSTANCE, keystoreAndCertificateInfos);
-        certDialog.setVisible(true);
-
         keystoreAndCertificateInfo = certDialog.getSelectedKeystoreInfo();
 
         if (keystoreAndCertificateInfo == null) {
@@ -124,42 +131,87 @@ public class SignerController {
     }
 
     /**
-     * Loads all valid certificates from configured keystore providers.
+     * Shows the certificates known from the last run right away, then probes all configured certificate sources
+     * concurrently and reconciles the dialog with what each source actually holds now.
      */
-    private void loadValidCertificates() {
-        List<KeyStoreProvider> keyStoreProviders = loadStoresProviders();
-        X509CertificateValidatorImpl validator = new X509CertificateValidatorImpl();
+    private Future<?> discoverValidCertificates(CertificateListDialog certDialog) {
+        List<CertificateDiscoveryService.Source> sources = loadCertificateSources();
+        for (CertificateDiscoveryService.Source source : sources) {
+            certDialog.setCertificates(source.getKey(), validCertificates(certificateInventory.cached(source.getKey())));
+        }
+        certDialog.setSearching(true);
 
-        keystoreAndCertificateInfos = keyStoreProviders.stream()
-                .flatMap(provider -> provider.loadCertificates().stream())
-                .distinct()
-                .filter(certInfo -> {
-                    X509Certificate cert = certInfo.getCertificate();
-                    return !validator.isExpired(cert)
-                            && !validator.isNotYetValid(cert)
-                            && validator.isDigitalSignatureAllowed(cert)
-                            && validator.isEndEntity(cert);
-                })
-                .collect(Collectors.toList());
+        return discoveryService.discover(sources, new CertificateDiscoveryService.Listener() {
+            private int found;
+
+            @Override
+            public void onCertificates(CertificateDiscoveryService.Source source, List<KeystoreAndCertificateInfo> certificates) {
+                List<KeystoreAndCertificateInfo> valid = validCertificates(certificates);
+                found += valid.size();
+                SwingUtilities.invokeLater(() -> certDialog.setCertificates(source.getKey(), valid));
+            }
+
+            @Override
+            public void onSourceFailed(CertificateDiscoveryService.Source source, Throwable error) {
+                SwingUtilities.invokeLater(() -> {
+                    // A source that is merely slow keeps its cached certificates; a broken one loses them
+                    if (!(error instanceof TimeoutException)) {
+                        certDialog.setCertificates(source.getKey(), Collections.emptyList());
+                    }
+                    certDialog.addFailedSource(source.getName());
+                });
+            }
+
+            @Override
+            public void onFinished() {
+                if (found == 0) {
+                    log.error("No valid certificates were found in the keystore. Prompting user to select a PFX certificate.");
+                }
+                SwingUtilities.invokeLater(() -> certDialog.setSearching(false));
+            }
+        });
     }
 
     /**
-     * Loads keystore providers based on active configuration.
+     * Certificate sources based on active configuration: the Windows store, and each PKCS#11 library separately.
      */
-    private List<KeyStoreProvider> loadStoresProviders() {
-        List<KeyStoreProvider> providers = new ArrayList<>();
+    private List<CertificateDiscoveryService.Source> loadCertificateSources() {
+        List<CertificateDiscoveryService.Source> sources = new ArrayList<>();
         Map<String, Boolean> activeStores = ConfigManager.getActiveStore();
 
         if (Boolean.TRUE.equals(activeStores.get(AppConstants.WIN_KEY_STORE))) {
-            providers.add(new WindowsKeyStoreProvider());
+            // No cheap change indicator for the Windows store: always re-read, the inventory only speeds up display
+            sources.add(new CertificateDiscoveryService.Source(AppConstants.WIN_KEY_STORE, "Windows Store",
+                    () -> certificateInventory.load(AppConstants.WIN_KEY_STORE, null,
+                            () -> new WindowsKeyStoreProvider().loadCertificates())));
         }
 
         if (Boolean.TRUE.equals(activeStores.get(AppConstants.PKCS11_KEY_STORE))) {
-            pkcs11KeyStoreProvider.setPkcs11LibPathsToBeLoadPublicKey(ConfigManager.getPKCS11Paths());
-            providers.add(pkcs11KeyStoreProvider);
+            List<String> libPaths = ConfigManager.getPKCS11Paths();
+            pkcs11KeyStoreProvider.setPkcs11LibPathsToBeLoadPublicKey(libPaths);
+            for (String libPath : libPaths) {
+                String key = AppConstants.PKCS11_KEY_STORE + ":" + libPath;
+                // Token objects are only searched when a token was inserted/removed/changed since the last scan
+                sources.add(new CertificateDiscoveryService.Source(key, new File(libPath).getName(),
+                        () -> certificateInventory.load(key, PKCS11KeyStoreProvider.inventoryStamp(libPath),
+                                () -> pkcs11KeyStoreProvider.loadLibraryCertificates(libPath))));
+            }
         }
 
-        return providers;
+        return sources;
+    }
+
+    private static List<KeystoreAndCertificateInfo> validCertificates(List<KeystoreAndCertificateInfo> certificates) {
+        X509CertificateValidatorImpl validator = new X509CertificateValidatorImpl();
+        return certificates.stream()
+                .filter(certInfo -> {
+                    X509Certificate cert = certInfo.getCertificate();
+                    return !validator.isExpired(cert)
+                            && !validator.isNotYetValid(cert)
+                            && validator.isDigitalSignatureAllowed(cert)
+                            && validator.isEndEntity(cert);
+                })
+                .collect(Collectors.toList());
     }
 
     /**
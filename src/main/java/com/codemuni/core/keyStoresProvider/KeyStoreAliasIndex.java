@@ -0,0 +1,173 @@
+package com.codemuni.core.keyStoresProvider;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.*;
+
+/**
+ * Index over the entries of a JCA {@link KeyStore}, built with a single pass over its aliases.
+ * <p>
+ * Resolves a certificate by serial (+ issuer) or by Subject Key Identifier to its alias without scanning the
+ * store again, and remembers the private key handle and chain of an entry once they were read. Built once per
+ * loaded store; a provider that reloads or logs out of its store must drop the index with it.
+ */
+public final class KeyStoreAliasIndex {
+
+    private static final Log LOG = LogFactory.getLog(KeyStoreAliasIndex.class);
+    private static final String SUBJECT_KEY_IDENTIFIER_OID = "2.5.29.14";
+
+    private final KeyStore keyStore;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<BigInteger, List<Entry>> bySerial = new HashMap<>();
+    private final Map<ByteBuffer, Entry> bySubjectKeyId = new HashMap<>();
+
+    private KeyStoreAliasIndex(KeyStore keyStore) {
+        this.keyStore = keyStore;
+    }
+
+    public static KeyStoreAliasIndex build(KeyStore keyStore) throws KeyStoreException {
+        KeyStoreAliasIndex index = new KeyStoreAliasIndex(keyStore);
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            String alias = aliases.nextElement();
+            Certificate cert = keyStore.getCertificate(alias);
+            if (cert instanceof X509Certificate) {
+                index.add(new Entry(alias, (X509Certificate) cert, keyStore.isKeyEntry(alias)));
+            }
+        }
+        return index;
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        // Key entries first, so a lookup prefers the alias that can actually sign
+        List<Entry> sameSerial = bySerial.computeIfAbsent(entry.certificate.getSerialNumber(), k -> new ArrayList<>(1));
+        if (entry.keyEntry) sameSerial.add(0, entry);
+        else sameSerial.add(entry);
+
+        byte[] ski = subjectKeyIdentifier(entry.certificate);
+        if (ski != null) {
+            Entry existing = bySubjectKeyId.get(ByteBuffer.wrap(ski));
+            if (existing == null || (!existing.keyEntry && entry.keyEntry)) {
+                bySubjectKeyId.put(ByteBuffer.wrap(ski), entry);
+            }
+        }
+    }
+
+    /**
+     * Entry whose certificate has the given serial and, if {@code issuer} is not null, issuer; null if none.
+     */
+    public Entry find(BigInteger serial, X500Principal issuer) {
+        List<Entry> candidates = bySerial.get(serial);
+        if (candidates == null) return null;
+        for (Entry entry : candidates) {
+            if (issuer == null || issuer.equals(entry.certificate.getIssuerX500Principal())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Entry by hexadecimal certificate serial as produced by {@code BigInteger.toString(16)} (leading zeros
+     * are accepted); null if none or not a hex number.
+     */
+    public Entry findBySerialHex(String serialHex) {
+        if (serialHex == null) return null;
+        try {
+            return find(new BigInteger(serialHex.trim(), 16), null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public Entry findBySubjectKeyIdentifier(byte[] subjectKeyIdentifier) {
+        return subjectKeyIdentifier != null ? bySubjectKeyId.get(ByteBuffer.wrap(subjectKeyIdentifier)) : null;
+    }
+
+    /**
+     * First entry holding a private key, in store order; null if the store has none.
+     */
+    public Entry firstKeyEntry() {
+        for (Entry entry : entries) {
+            if (entry.keyEntry) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Private key of {@code entry}, read from the store on first use only.
+     */
+    public PrivateKey privateKey(Entry entry, char[] password)
+            throws KeyStoreException, NoSuchAlgorithmException, UnrecoverableKeyException {
+        synchronized (entry) {
+            if (entry.privateKey == null) {
+                Key key = keyStore.getKey(entry.alias, password);
+                if (key instanceof PrivateKey) entry.privateKey = (PrivateKey) key;
+            }
+            return entry.privateKey;
+        }
+    }
+
+    /**
+     * Certificate chain of {@code entry}, read from the store on first use only; null if the store has none.
+     */
+    public Certificate[] chain(Entry entry) throws KeyStoreException {
+        synchronized (entry) {
+            if (entry.chain == null) {
+                entry.chain = keyStore.getCertificateChain(entry.alias);
+            }
+            return entry.chain != null ? entry.chain.clone() : null;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static byte[] subjectKeyIdentifier(X509Certificate certificate) {
+        byte[] extension = certificate.getExtensionValue(SUBJECT_KEY_IDENTIFIER_OID);
+        if (extension == null) return null;
+        try {
+            return SubjectKeyIdentifier.getInstance(ASN1OctetString.getInstance(extension).getOctets()).getKeyIdentifier();
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Malformed Subject Key Identifier in " + certificate.getSubjectX500Principal() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static final class Entry {
+        private final String alias;
+        private final X509Certificate certificate;
+        private final boolean keyEntry;
+        private PrivateKey privateKey;
+        private Certificate[] chain;
+
+        private Entry(String alias, X509Certificate certificate, boolean keyEntry) {
+            this.alias = alias;
+            this.certificate = certificate;
+            this.keyEntry = keyEntry;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public X509Certificate getCertificate() {
+            return certificate;
+        }
+
+        public boolean isKeyEntry() {
+            return keyEntry;
+        }
+    }
+}
@@ -13,18 +13,22 @@ import sun.security.pkcs11.wrapper.*;
 
 import javax.security.auth.callback.PasswordCallback;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * PKCS#11 KeyStore provider implementation with persistent session support.
- * PIN is only requested once per app lifecycle unless explicitly logged out/reset.
+ * Logged-in sessions are owned by {@link PKCS11SessionManager}: the PIN is only requested again after the
+ * session idled out, was locked, or was reset because the token failed.
  */
 public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
 
@@ -32,10 +36,16 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
 
     private static final String PKCS11_TYPE = "PKCS11";
     private static final Provider BC_PROVIDER = new BouncyCastleProvider();
-    private final Map<String, String> serialToAlias = new ConcurrentHashMap<>();
+    private static final PKCS11SessionManager SESSIONS = PKCS11SessionManager.getInstance();
+    private static final PKCS11ModuleRegistry MODULES = PKCS11ModuleRegistry.getInstance();
+    // C_FindObjects batch size while enumerating certificates; doubled while batches come back full
+    private static final int FIND_BATCH_MIN = 16;
+    private static final int FIND_BATCH_MAX = 256;
+    private static final AtomicInteger PROVIDER_COUNTER = new AtomicInteger();
     private List<String> pkcs11LibPathsToBeLoadPublicKey;
     private volatile SunPKCS11 sunPKCS11Provider;
     private volatile KeyStore keyStore;
+    private volatile PKCS11SessionManager.TokenSession tokenSession; // holds the alias index of the token
 
     private String certificateSerialNumber; // hex string
     private String tokenSerialNumber;       // token info serial string
@@ -53,17 +63,14 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
     private static long findSlotByTokenSerial(String libPath, String desiredSerial)
             throws IncorrectPINException, TokenOrHsmNotFoundException, KeyStoreInitializationException {
         try {
-            PKCS11 pkcs11 = PKCS11.getInstance(libPath, "C_GetFunctionList", null, false);
-            for (long slot : pkcs11.C_GetSlotList(true)) {
-                CK_TOKEN_INFO info = pkcs11.C_GetTokenInfo(slot);
-                String serial = new String(info.serialNumber).trim();
-                if (serial.equalsIgnoreCase(desiredSerial.trim())) {
-                    return slot;
-                }
+            long slot = MODULES.findSlot(libPath, desiredSerial);
+            if (slot >= 0) {
+                return slot;
             }
             throw new TokenOrHsmNotFoundException("Token with serial " + desiredSerial + " not found in library: " + libPath);
         } catch (PKCS11Exception e) {
             LOG.error("PKCS#11 error: " + e.getMessage(), e);
+            MODULES.invalidate(libPath);
             throw translatePKCS11Error(e);
         } catch (IOException e) {
             throw new KeyStoreInitializationException("Unable to load PKCS#11 library from path: " + libPath, e);
@@ -143,6 +150,34 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         return result;
     }
 
+    public List<String> getPkcs11LibPathsToBeLoadPublicKey() {
+        return pkcs11LibPathsToBeLoadPublicKey;
+    }
+
+    /**
+     * Cheap stamp of what {@link #loadLibraryCertificates(String)} would return: library file identity plus the
+     * fingerprint of every token present. Only touches the cached slot index, never searches token objects.
+     */
+    public static String inventoryStamp(String libPath) throws Exception {
+        File library = new File(libPath);
+        StringBuilder stamp = new StringBuilder()
+                .append(library.length()).append('@').append(library.lastModified());
+        for (PKCS11ModuleRegistry.TokenSlot token : MODULES.tokens(libPath)) {
+            stamp.append(';').append(token.getFingerprint());
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Certificates of every token of a single library, so libraries can be probed independently
+     * (and a hanging driver does not hold up the others).
+     */
+    public List<KeystoreAndCertificateInfo> loadLibraryCertificates(String libPath) throws Exception {
+        List<KeystoreAndCertificateInfo> result = new ArrayList<>();
+        enumerateLibraryCertificates(libPath, result::add);
+        return result;
+    }
+
     /**
      * Explicit login method — prompts for PIN only if not already logged in.
      */
@@ -155,32 +190,52 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         }
 
 
-        PKCS11 pkcs11 = PKCS11.getInstance(libPath, "C_GetFunctionList", null, false);
+        PKCS11 pkcs11 = MODULES.module(libPath);
         CertificateFactory certFactory = CertificateFactory.getInstance("X.509");
 
-        for (long slot : pkcs11.C_GetSlotList(true)) {
+        for (PKCS11ModuleRegistry.TokenSlot token : MODULES.tokens(libPath)) {
+            long slot = token.getSlot();
+            String tokenSerial = token.getSerial();
             long session = 0L;
             try {
-                CK_TOKEN_INFO tokenInfo = pkcs11.C_GetTokenInfo(slot);
-                String tokenSerial = new String(tokenInfo.serialNumber).trim();
-
                 session = pkcs11.C_OpenSession(slot, PKCS11Constants.CKF_SERIAL_SESSION, null, null);
                 CK_ATTRIBUTE[] template = {new CK_ATTRIBUTE(PKCS11Constants.CKA_CLASS, PKCS11Constants.CKO_CERTIFICATE)};
 
+                // Same certificate stored twice under one CKA_ID (seen on some middleware) is only reported once
+                Map<ByteBuffer, List<byte[]>> seenById = new HashMap<>();
                 pkcs11.C_FindObjectsInit(session, template);
-                while (true) {
-                    long[] objects = pkcs11.C_FindObjects(session, 10);
-                    if (objects == null || objects.length == 0) break;
-                    for (long obj : objects) {
-                        CK_ATTRIBUTE[] attrs = {new CK_ATTRIBUTE(PKCS11Constants.CKA_VALUE)};
-                        pkcs11.C_GetAttributeValue(session, obj, attrs);
-                        try (ByteArrayInputStream bais = new ByteArrayInputStream(attrs[0].getByteArray())) {
-                            X509Certificate cert = (X509Certificate) certFactory.generateCertificate(bais);
-                            consumer.accept(new KeystoreAndCertificateInfo(cert, AppConstants.PKCS11_KEY_STORE, tokenSerial, libPath));
+                try {
+                    int batchSize = FIND_BATCH_MIN;
+                    while (true) {
+                        long[] objects = pkcs11.C_FindObjects(session, batchSize);
+                        if (objects == null || objects.length == 0) break;
+                        if (objects.length == batchSize) {
+                            batchSize = Math.min(batchSize * 2, FIND_BATCH_MAX); // many objects: fewer, bigger batches
+                        }
+                        for (long obj : objects) {
+                            CK_ATTRIBUTE[] attrs = readCertificateAttributes(pkcs11, session, obj);
+                            byte[] der = attrs[0].getByteArray();
+                            if (der == null || der.length == 0) continue;
+                            byte[] id = attrs.length > 1 && attrs[1].pValue != null ? attrs[1].getByteArray() : new byte[0];
+                            List<byte[]> sameId = seenById.computeIfAbsent(ByteBuffer.wrap(id), k -> new ArrayList<>(1));
+                            if (sameId.stream().anyMatch(seen -> Arrays.equals(seen, der))) continue;
+                            sameId.add(der);
+
+                            try {
+                                X509Certificate cert = (X509Certificate) certFactory.generateCertificate(new ByteArrayInputStream(der));
+                                consumer.accept(new KeystoreAndCertificateInfo(cert, AppConstants.PKCS11_KEY_STORE, tokenSerial, libPath));
+                            } catch (CertificateException e) {
+                                String label = attrs.length > 2 && attrs[2].pValue != null ? new String(attrs[2].getCharArray()) : "?";
+                                LOG.warn("Skipping unparsable certificate '" + label + "' on token " + tokenSerial + ": " + e.getMessage());
+                            }
                         }
                     }
+                } finally {
+                    pkcs11.C_FindObjectsFinal(session);
                 }
-                pkcs11.C_FindObjectsFinal(session);
+            } catch (PKCS11Exception e) {
+                MODULES.invalidate(libPath); // token removed or slot changed since it was indexed
+                throw e;
             } finally {
                 if (session != 0L) {
                     try {
@@ -192,6 +247,30 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         }
     }
 
+    /**
+     * CKA_VALUE, CKA_ID and CKA_LABEL of a certificate object in one round trip. Tokens that reject the combined
+     * template (e.g. an object without CKA_ID) are asked for CKA_VALUE alone.
+     */
+    private static CK_ATTRIBUTE[] readCertificateAttributes(PKCS11 pkcs11, long session, long obj) throws PKCS11Exception {
+        CK_ATTRIBUTE[] attrs = {
+                new CK_ATTRIBUTE(PKCS11Constants.CKA_VALUE),
+                new CK_ATTRIBUTE(PKCS11Constants.CKA_ID),
+                new CK_ATTRIBUTE(PKCS11Constants.CKA_LABEL)
+        };
+        try {
+            pkcs11.C_GetAttributeValue(session, obj, attrs);
+            return attrs;
+        } catch (PKCS11Exception e) {
+            if (e.getErrorCode() != PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID
+                    && e.getErrorCode() != PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE) {
+                throw e;
+            }
+            CK_ATTRIBUTE[] valueOnly = {new CK_ATTRIBUTE(PKCS11Constants.CKA_VALUE)};
+            pkcs11.C_GetAttributeValue(session, obj, valueOnly);
+            return valueOnly;
+        }
+    }
+
     public void setCertificateSerialNumber(String certificateSerialNumber) {
         this.certificateSerialNumber = certificateSerialNumber;
     }
@@ -216,27 +295,50 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         Objects.requireNonNull(pkcs11LibPath, "PKCS#11 library path must be set.");
         Objects.requireNonNull(tokenSerialNumber, "Token serial number must be set.");
 
+        PKCS11SessionManager.TokenSession session = SESSIONS.acquire(pkcs11LibPath, tokenSerialNumber);
+        if (session != null) {
+            sunPKCS11Provider = session.getProvider();
+            keyStore = session.getKeyStore();
+            tokenSession = session;
+            LOG.info("Reusing logged-in session of token " + tokenSerialNumber + ".");
+            return;
+        }
+
         long slot = findSlotByTokenSerial(pkcs11LibPath, tokenSerialNumber);
 
         if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
             Security.addProvider(BC_PROVIDER);
         }
 
-        cleanupProvider();
-
+        // Sessions of several tokens stay registered at the same time (see PKCS11SessionManager), also a retiring
+        // one of a token that was replaced in the same slot: the name must be unique to this provider instance.
         String config = String.format(Locale.ROOT,
-                "name=PKCS11-%d\nlibrary=%s\nslot=%d", slot, pkcs11LibPath, slot);
+                "name=PKCS11-%d-%08x-%s-%d\nlibrary=%s\nslot=%d", slot, pkcs11LibPath.hashCode(),
+                tokenSerialNumber.replaceAll("[^A-Za-z0-9]", ""), PROVIDER_COUNTER.incrementAndGet(), pkcs11LibPath, slot);
 
-        sunPKCS11Provider = new SunPKCS11(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
-        Security.addProvider(sunPKCS11Provider);
+        SunPKCS11 provider = new SunPKCS11(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+        if (Security.addProvider(provider) < 0) {
+            throw new KeyStoreInitializationException("A PKCS#11 provider named " + provider.getName() + " is already registered.");
+        }
 
+        boolean registered = false;
         try {
+            // Explicit provider: with null, JCA would pick the first registered SunPKCS11, possibly another token's
             KeyStore.Builder builder = KeyStore.Builder.newInstance(
-                    "PKCS11", null, new KeyStore.CallbackHandlerProtection(pinHandler));
-            this.keyStore = builder.getKeyStore();
-            LOG.info("Login successful — session will remain active until logout() or reset().");
+                    PKCS11_TYPE, provider, new KeyStore.CallbackHandlerProtection(pinHandler));
+            KeyStore loaded = builder.getKeyStore();
+            tokenSession = SESSIONS.register(pkcs11LibPath, tokenSerialNumber, provider, loaded);
+            registered = true;
+            sunPKCS11Provider = provider;
+            keyStore = loaded;
+            LOG.info("Login successful — session is kept by PKCS11SessionManager until idle timeout, lock or reset().");
         } catch (KeyStoreException e) {
             handleLoginException(e);
+        } finally {
+            if (!registered) {
+                // Not pooled: nobody else will remove it
+                Security.removeProvider(provider.getName());
+            }
         }
     }
 
@@ -266,19 +368,6 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         throw e; // Unhandled — rethrow
     }
 
-    private void cleanupProvider() {
-        if (sunPKCS11Provider != null) {
-            try {
-                Security.removeProvider(sunPKCS11Provider.getName());
-                LOG.debug("Removed previous PKCS#11 provider: " + sunPKCS11Provider.getName());
-            } catch (Exception e) {
-                LOG.warn("Failed to remove PKCS#11 provider: " + e.getMessage(), e);
-            } finally {
-                sunPKCS11Provider = null;
-            }
-        }
-    }
-
     public synchronized KeyStore loadKeyStore(SmartCardCallbackHandler handler)
             throws KeyStoreException, UserCancelledPasswordEntryException {
 
@@ -318,20 +407,49 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
     }
 
 
+    /**
+     * Ends the use of the token for the current document. The logged-in session stays with
+     * {@link PKCS11SessionManager} for the next signature; only per-document state is cleared.
+     */
+    public synchronized void release() {
+        if (tokenSession != null) {
+            SESSIONS.release(tokenSession);
+        }
+        keyStore = null;
+        sunPKCS11Provider = null;
+        tokenSession = null;
+        certificateSerialNumber = null;
+        tokenSerialNumber = null;
+        pkcs11LibPath = null;
+    }
+
+    /**
+     * True if {@code t} was caused by the token/PKCS#11 layer (device removed, session closed, ...),
+     * in which case the cached session must not be reused.
+     */
+    public static boolean isTokenFailure(Throwable t) {
+        for (Throwable cur = t; cur != null; cur = cur.getCause()) {
+            if (cur instanceof PKCS11Exception || cur instanceof ProviderException) return true;
+            if (cur.getCause() == cur) break;
+        }
+        return false;
+    }
+
     /**
      * Explicit logout — closes session and clears sensitive data.
      */
     public synchronized void logout() {
-        try {
-            if (sunPKCS11Provider != null) {
-                sunPKCS11Provider.logout();
-                Security.removeProvider(sunPKCS11Provider.getName());
-            }
-        } catch (Exception ignored) {
+        // The session manager logs the session out and removes its provider once no signature uses it any more
+        if (pkcs11LibPath != null && tokenSerialNumber != null) {
+            SESSIONS.invalidate(pkcs11LibPath, tokenSerialNumber);
+            MODULES.invalidate(pkcs11LibPath);
+        }
+        if (tokenSession != null) {
+            SESSIONS.release(tokenSession);
         }
         keyStore = null;
         sunPKCS11Provider = null;
-        serialToAlias.clear();
+        tokenSession = null;
         LOG.info("Logged out from token — session closed.");
     }
 
@@ -355,11 +473,11 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         if (keyStore == null) {
             throw new KeyStoreInitializationException("KeyStore not loaded. Call login() first.");
         }
-        String alias = getAliasForCertificateSerial();
+        KeyStoreAliasIndex.Entry entry = resolveEntry();
         try {
-            PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, null);
+            PrivateKey privateKey = tokenSession.getAliasIndex().privateKey(entry, null);
             if (privateKey == null) {
-                throw new PrivateKeyAccessException("No private key for alias: " + alias);
+                throw new PrivateKeyAccessException("No private key for alias: " + entry.getAlias());
             }
             return privateKey;
         } catch (UnrecoverableKeyException e) {
@@ -377,11 +495,7 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         if (keyStore == null) {
             throw new KeyStoreInitializationException("KeyStore not loaded. Call login() first.");
         }
-        Certificate cert = keyStore.getCertificate(getAliasForCertificateSerial());
-        if (!(cert instanceof X509Certificate)) {
-            throw new NotADigitalSignatureException("Certificate is not X.509.");
-        }
-        return (X509Certificate) cert;
+        return resolveEntry().getCertificate();
     }
 
     @Override
@@ -389,35 +503,22 @@ public final class PKCS11KeyStoreProvider implements KeyStoreProvider {
         if (keyStore == null) {
             throw new KeyStoreException("KeyStore not loaded. Call login() first.");
         }
-        Certificate[] chain = keyStore.getCertificateChain(getAliasForCertificateSerial());
+        Certificate[] chain = tokenSession.getAliasIndex().chain(resolveEntry());
         if (chain == null || chain.length == 0) {
             throw new KeyStoreException("No certificate chain found.");
         }
         return chain;
     }
 
-    private String getAliasForCertificateSerial() {
+    private KeyStoreAliasIndex.Entry resolveEntry() throws KeyStoreException {
         if (certificateSerialNumber == null) {
             throw new IllegalArgumentException("Certificate serial number must be set first.");
         }
-        return serialToAlias.computeIfAbsent(certificateSerialNumber, serial -> {
-            try {
-                Enumeration<String> aliases = keyStore.aliases();
-                while (aliases.hasMoreElements()) {
-                    String alias = aliases.nextElement();
-                    Certificate cert = keyStore.getCertificate(alias);
-                    if (cert instanceof X509Certificate) {
-                        String serialHex = ((X509Certificate) cert).getSerialNumber().toString(16);
-                        if (serialHex.equalsIgnoreCase(serial)) {
-                            return alias;
-                        }
-                    }
-                }
-                return null;
-            } catch (KeyStoreException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        KeyStoreAliasIndex.Entry entry = tokenSession.getAliasIndex().findBySerialHex(certificateSerialNumber);
+        if (entry == null) {
+            throw new CertificateNotFoundException("Certificate with serial " + certificateSerialNumber + " not found on token.");
+        }
+        return entry;
     }
 
 }
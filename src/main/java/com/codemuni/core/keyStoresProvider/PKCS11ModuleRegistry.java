@@ -0,0 +1,161 @@
+package com.codemuni.core.keyStoresProvider;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import sun.security.pkcs11.wrapper.CK_TOKEN_INFO;
+import sun.security.pkcs11.wrapper.PKCS11;
+import sun.security.pkcs11.wrapper.PKCS11Exception;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of loaded PKCS#11 modules and of the tokens present in their slots.
+ * <p>
+ * Each library is loaded and initialized once. The token-serial → slot index of a library is reused
+ * for {@link #INDEX_TTL_MILLIS}. Within that window a single {@code C_GetSlotList} is compared with the
+ * indexed slots to notice inserted/removed tokens (the JDK wrapper does not expose
+ * {@code C_WaitForSlotEvent}); only then is {@code C_GetTokenInfo} called again for every slot.
+ * A serial that is not in the index triggers one re-scan, so a token plugged in a moment ago is found
+ * without waiting for the TTL.
+ */
+public final class PKCS11ModuleRegistry {
+
+    private static final Log LOG = LogFactory.getLog(PKCS11ModuleRegistry.class);
+    static final long INDEX_TTL_MILLIS = 10_000;
+    private static final PKCS11ModuleRegistry INSTANCE = new PKCS11ModuleRegistry();
+
+    private final Map<String, Module> modules = new ConcurrentHashMap<>();
+
+    private PKCS11ModuleRegistry() {
+    }
+
+    public static PKCS11ModuleRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The loaded module for {@code libPath}, loading and initializing it on first use.
+     */
+    public PKCS11 module(String libPath) throws IOException, PKCS11Exception {
+        return moduleEntry(libPath).pkcs11;
+    }
+
+    /**
+     * Tokens currently present in the library's slots, in slot order.
+     */
+    public List<TokenSlot> tokens(String libPath) throws IOException, PKCS11Exception {
+        return new ArrayList<>(moduleEntry(libPath).index(false).values());
+    }
+
+    /**
+     * Slot holding the token with {@code tokenSerial}, or -1 if no such token is present.
+     */
+    public long findSlot(String libPath, String tokenSerial) throws IOException, PKCS11Exception {
+        Module module = moduleEntry(libPath);
+        String key = normalize(tokenSerial);
+        TokenSlot token = module.index(false).get(key);
+        if (token == null) {
+            token = module.index(true).get(key); // maybe inserted since the last scan
+        }
+        return token != null ? token.getSlot() : -1;
+    }
+
+    /**
+     * Forgets the slot index of a library, e.g. after an operation failed because a token was removed.
+     */
+    public void invalidate(String libPath) {
+        Module module = modules.get(libPath);
+        if (module != null) module.invalidate();
+    }
+
+    private Module moduleEntry(String libPath) throws IOException, PKCS11Exception {
+        Module module = modules.get(libPath);
+        if (module != null) return module;
+        synchronized (modules) {
+            module = modules.get(libPath);
+            if (module == null) {
+                module = new Module(PKCS11.getInstance(libPath, "C_GetFunctionList", null, false));
+                modules.put(libPath, module);
+                LOG.info("Loaded PKCS#11 module: " + libPath);
+            }
+            return module;
+        }
+    }
+
+    private static String normalize(String serial) {
+        return serial.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public static final class TokenSlot {
+        private final long slot;
+        private final String serial;
+        private final String label;
+        private final String fingerprint;
+
+        private TokenSlot(long slot, CK_TOKEN_INFO info) {
+            this.slot = slot;
+            this.serial = new String(info.serialNumber).trim();
+            this.label = new String(info.label).trim();
+            // Free memory changes when objects are added to or deleted from the token (if the token reports it)
+            this.fingerprint = serial + '|' + label + '|' + info.ulFreePublicMemory + '|' + info.ulFreePrivateMemory;
+        }
+
+        public long getSlot() {
+            return slot;
+        }
+
+        public String getSerial() {
+            return serial;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Cheap change indicator of the token's content, comparable across runs.
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+
+    private static final class Module {
+        private final PKCS11 pkcs11;
+        private Map<String, TokenSlot> index;
+        private long[] indexedSlots;
+        private long indexedAt;
+
+        private Module(PKCS11 pkcs11) {
+            this.pkcs11 = pkcs11;
+        }
+
+        synchronized Map<String, TokenSlot> index(boolean forceRefresh) throws PKCS11Exception {
+            boolean expired = forceRefresh || index == null
+                    || System.currentTimeMillis() - indexedAt > INDEX_TTL_MILLIS;
+            long[] slots = pkcs11.C_GetSlotList(true);
+            if (expired || !Arrays.equals(slots, indexedSlots)) {
+                Map<String, TokenSlot> fresh = new LinkedHashMap<>();
+                for (long slot : slots) {
+                    try {
+                        TokenSlot token = new TokenSlot(slot, pkcs11.C_GetTokenInfo(slot));
+                        fresh.put(normalize(token.getSerial()), token);
+                    } catch (PKCS11Exception e) {
+                        // Token pulled out between C_GetSlotList and C_GetTokenInfo
+                        LOG.debug("Skipping slot " + slot + ": " + e.getMessage());
+                    }
+                }
+                index = Collections.unmodifiableMap(fresh);
+                indexedSlots = slots;
+                indexedAt = System.currentTimeMillis();
+            }
+            return index;
+        }
+
+        synchronized void invalidate() {
+            index = null;
+        }
+    }
+}
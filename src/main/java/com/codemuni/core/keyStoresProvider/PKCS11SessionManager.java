@@ -0,0 +1,201 @@
+package com.codemuni.core.keyStoresProvider;
+
+import com.codemuni.config.ConfigManager;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import sun.security.pkcs11.SunPKCS11;
+
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps logged-in PKCS#11 token sessions (SunPKCS11 provider + KeyStore) alive across signatures.
+ * <p>
+ * Registering a provider and logging in with the PIN is by far the most expensive part of signing with a
+ * token, so a session is kept after the document is signed and handed to the next signature on the same
+ * (library, token serial). Sessions are logged out when they have been idle longer than the configured
+ * timeout, on {@link #lockAll()} (explicit "lock tokens" action) and on JVM shutdown.
+ * A session is never logged out while a signature is using it: a session that is locked or invalidated while in use
+ * is no longer handed out, and is logged out when its last user releases it. Only JVM shutdown logs out regardless.
+ * This class alone adds and removes the SunPKCS11 providers of the sessions it holds.
+ */
+public final class PKCS11SessionManager {
+
+    private static final Log LOG = LogFactory.getLog(PKCS11SessionManager.class);
+    private static final long REAPER_INTERVAL_SECONDS = 30;
+    private static final PKCS11SessionManager INSTANCE = new PKCS11SessionManager();
+
+    private final Map<String, TokenSession> sessions = new HashMap<>();
+    private ScheduledExecutorService reaper;
+
+    private PKCS11SessionManager() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeAll, "pkcs11-session-shutdown"));
+    }
+
+    public static PKCS11SessionManager getInstance() {
+        return INSTANCE;
+    }
+
+    private static String keyOf(String libPath, String tokenSerial) {
+        return libPath + '\u0000' + tokenSerial.trim().toUpperCase();
+    }
+
+    /**
+     * Returns the live session for the token and marks it in use, or null if there is none.
+     * Every successful acquire must be paired with {@link #release(TokenSession)}.
+     */
+    public synchronized TokenSession acquire(String libPath, String tokenSerial) {
+        TokenSession session = sessions.get(keyOf(libPath, tokenSerial));
+        if (session == null) return null;
+        session.users++;
+        session.lastUsed = System.currentTimeMillis();
+        return session;
+    }
+
+    /**
+     * Takes ownership of a freshly logged-in provider/KeyStore; the caller holds it as if acquired.
+     */
+    public synchronized TokenSession register(String libPath, String tokenSerial, SunPKCS11 provider, KeyStore keyStore) {
+        TokenSession previous = sessions.remove(keyOf(libPath, tokenSerial));
+        if (previous != null && previous.provider != provider) {
+            retire(previous);
+        }
+        TokenSession session = new TokenSession(provider, keyStore);
+        session.users = 1;
+        sessions.put(keyOf(libPath, tokenSerial), session);
+        startReaper();
+        return session;
+    }
+
+    /**
+     * Ends one use of a session returned by {@link #acquire} or {@link #register}.
+     */
+    public synchronized void release(TokenSession session) {
+        session.users = Math.max(0, session.users - 1);
+        session.lastUsed = System.currentTimeMillis();
+        if (session.users > 0) return;
+        if (session.retired) {
+            close(session);
+        } else if (ConfigManager.getPkcs11SessionIdleMillis() <= 0) {
+            // Session reuse disabled: log out as soon as the document is signed
+            sessions.values().remove(session);
+            close(session);
+        }
+    }
+
+    /**
+     * Logs out one token session, e.g. after the device was removed or the session became invalid.
+     * A session still in use is logged out once it is released.
+     */
+    public synchronized void invalidate(String libPath, String tokenSerial) {
+        TokenSession session = sessions.remove(keyOf(libPath, tokenSerial));
+        if (session != null) retire(session);
+    }
+
+    /**
+     * Logs out every token session; the next signature asks for the PIN again. Sessions in use by a running
+     * signature are logged out as soon as it releases them.
+     */
+    public synchronized void lockAll() {
+        for (TokenSession session : sessions.values()) {
+            retire(session);
+        }
+        if (!sessions.isEmpty()) LOG.info("Locked " + sessions.size() + " PKCS#11 token session(s).");
+        sessions.clear();
+    }
+
+    private synchronized void closeAll() {
+        for (TokenSession session : sessions.values()) {
+            close(session);
+        }
+        sessions.clear();
+    }
+
+    public synchronized boolean hasActiveSessions() {
+        return !sessions.isEmpty();
+    }
+
+    private synchronized void evictIdle() {
+        long idleMillis = ConfigManager.getPkcs11SessionIdleMillis();
+        long now = System.currentTimeMillis();
+        Iterator<TokenSession> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            TokenSession session = it.next();
+            if (session.users == 0 && now - session.lastUsed >= idleMillis) {
+                it.remove();
+                close(session);
+                LOG.info("PKCS#11 token session idle for " + (now - session.lastUsed) / 1000 + "s — logged out.");
+            }
+        }
+    }
+
+    private void startReaper() {
+        if (reaper != null) return;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pkcs11-session-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(this::evictIdle, REAPER_INTERVAL_SECONDS, REAPER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void retire(TokenSession session) {
+        if (session.users > 0) {
+            session.retired = true;
+        } else {
+            close(session);
+        }
+    }
+
+    private static void close(TokenSession session) {
+        try {
+            session.provider.logout();
+        } catch (Exception e) {
+            LOG.debug("PKCS#11 logout failed: " + e.getMessage());
+        }
+        try {
+            Security.removeProvider(session.provider.getName());
+        } catch (Exception e) {
+            LOG.warn("Failed to remove PKCS#11 provider: " + e.getMessage(), e);
+        }
+    }
+
+    public static final class TokenSession {
+        private final SunPKCS11 provider;
+        private final KeyStore keyStore;
+        private KeyStoreAliasIndex aliasIndex;
+        private int users;
+        private boolean retired; // no longer handed out; logged out when the last user releases it
+        private long lastUsed = System.currentTimeMillis();
+
+        private TokenSession(SunPKCS11 provider, KeyStore keyStore) {
+            this.provider = provider;
+            this.keyStore = keyStore;
+        }
+
+        public SunPKCS11 getProvider() {
+            return provider;
+        }
+
+        public KeyStore getKeyStore() {
+            return keyStore;
+        }
+
+        /**
+         * Index of the token's entries, built on first use and kept for the life of the session.
+         */
+        public synchronized KeyStoreAliasIndex getAliasIndex() throws KeyStoreException {
+            if (aliasIndex == null) {
+                aliasIndex = KeyStoreAliasIndex.build(keyStore);
+            }
+            return aliasIndex;
+        }
+    }
+}
@@ -12,12 +12,11 @@ import org.apache.commons.logging.LogFactory;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import java.io.FileInputStream;
-import java.io.IOException;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
 import java.util.List;
 
 public class PKCS12KeyStoreProvider implements KeyStoreProvider {
@@ -25,10 +24,12 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
     // Retry config
     private static final int MAX_PIN_ATTEMPTS = 3;
     private static final Log log = LogFactory.getLog(PKCS12KeyStoreProvider.class);
+    private static final PfxUnlockCache UNLOCKED_PFX = PfxUnlockCache.getInstance();
     private final String pfxFilePath;
     private final Provider provider = new BouncyCastleProvider();
     // Session-level cached data
     private KeyStore keyStore;
+    private KeyStoreAliasIndex aliasIndex;
     private PrivateKey privateKey;
     private X509Certificate certificate;
     private Certificate[] certificateChain;
@@ -43,16 +44,12 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
         List<KeystoreAndCertificateInfo> certList = new ArrayList<>();
         try {
             loadKeyStore();
-            String alias = getSigningAlias();
-
-            Certificate cert = keyStore.getCertificate(alias);
-            if (cert instanceof X509Certificate) {
-                certificate = (X509Certificate) cert;
-                certificateChain = keyStore.getCertificateChain(alias);
-                KeystoreAndCertificateInfo certInfo = new KeystoreAndCertificateInfo("PKCS12", pfxFilePath);
-                certInfo.setCertificate(certificate);
-                certList.add(certInfo);
-            }
+            KeyStoreAliasIndex.Entry entry = getSigningEntry();
+            certificate = entry.getCertificate();
+            certificateChain = aliasIndex.chain(entry);
+            KeystoreAndCertificateInfo certInfo = new KeystoreAndCertificateInfo("PKCS12", pfxFilePath);
+            certInfo.setCertificate(certificate);
+            certList.add(certInfo);
         } catch (Exception e) {
             throw new KeyStoreInitializationException(e.getMessage(), e);
         }
@@ -62,34 +59,32 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
     private void loadKeyStore() throws KeyStoreInitializationException, UserCancelledPasswordEntryException {
         if (keyStore != null) return; // Already loaded
 
-        try {
-            Security.addProvider(provider);
-            keyStore = KeyStore.getInstance("PKCS12", provider);
-
-            if (cachedPassword == null) {
-                cachedPassword = promptPasswordWithRetry();
-            }
-
-            try (FileInputStream fis = new FileInputStream(pfxFilePath)) {
-                keyStore.load(fis, cachedPassword);
-            }
-        } catch (IOException | GeneralSecurityException e) {
-            // If load fails after retry, clear cache to force re-prompt later
-            cachedPassword = null;
-            keyStore = null;
-
-            if (e instanceof UserCancelledPasswordEntryException) {
-                throw (UserCancelledPasswordEntryException) e;
-            }
+        PfxUnlockCache.UnlockedPfx unlocked = UNLOCKED_PFX.get(pfxFilePath);
+        if (unlocked != null) {
+            keyStore = unlocked.getKeyStore();
+            aliasIndex = unlocked.getAliasIndex();
+            cachedPassword = unlocked.copyPassword();
+            unlocked.wipe();
+            log.info("Reusing unlocked PFX file: " + pfxFilePath);
+            return;
+        }
 
+        Security.addProvider(provider);
+        try {
+            keyStore = promptAndLoadWithRetry();
+            aliasIndex = KeyStoreAliasIndex.build(keyStore);
+            UNLOCKED_PFX.put(pfxFilePath, keyStore, aliasIndex, cachedPassword);
+        } catch (KeyStoreException e) {
+            clearSession();
             throw new KeyStoreInitializationException("Failed to load PKCS12 keystore", e);
         }
     }
 
     /**
-     * Prompt for password up to MAX_PIN_ATTEMPTS times
+     * Prompt for password up to MAX_PIN_ATTEMPTS times. The keystore that accepted the password is the one
+     * returned, so the file is parsed (and its PBE keys derived) once per attempt rather than twice.
      */
-    private char[] promptPasswordWithRetry() throws UserCancelledPasswordEntryException {
+    private KeyStore promptAndLoadWithRetry() throws UserCancelledPasswordEntryException {
         for (int attempt = 1; attempt <= MAX_PIN_ATTEMPTS; attempt++) {
             String message = (attempt == 1)
                     ? "Enter PFX Password"
@@ -97,10 +92,12 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
 
             char[] pwd = showPasswordPrompt(message, attempt != 1);
 
-            // Try loading a temporary KeyStore to validate password
-            if (validatePassword(pfxFilePath, pwd)) {
-                return pwd;
+            KeyStore loaded = tryLoad(pwd);
+            if (loaded != null) {
+                cachedPassword = pwd;
+                return loaded;
             }
+            Arrays.fill(pwd, '\0');
 
             if (attempt == MAX_PIN_ATTEMPTS) {
                 throw new UserCancelledPasswordEntryException("Maximum password attempts exceeded. Aborting operation.");
@@ -138,25 +135,22 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
         return dialog.getValue().toCharArray();
     }
 
-    private boolean validatePassword(String pfxPath, char[] password) {
-        try (FileInputStream fis = new FileInputStream(pfxPath)) {
-            KeyStore tempKs = KeyStore.getInstance("PKCS12", provider);
-            tempKs.load(fis, password);
-            return true; // password works
+    private KeyStore tryLoad(char[] password) {
+        try (FileInputStream fis = new FileInputStream(pfxFilePath)) {
+            KeyStore ks = KeyStore.getInstance("PKCS12", provider);
+            ks.load(fis, password);
+            return ks; // password works
         } catch (Exception e) {
-            return false; // wrong password
+            return null; // wrong password
         }
     }
 
-    private String getSigningAlias() throws KeyStoreException {
-        Enumeration<String> aliases = keyStore.aliases();
-        while (aliases.hasMoreElements()) {
-            String alias = aliases.nextElement();
-            if (keyStore.isKeyEntry(alias)) {
-                return alias; // Found alias with private key
-            }
+    private KeyStoreAliasIndex.Entry getSigningEntry() throws KeyStoreException {
+        KeyStoreAliasIndex.Entry entry = aliasIndex != null ? aliasIndex.firstKeyEntry() : null;
+        if (entry == null) {
+            throw new KeyStoreException("No private key entry found in keystore.");
         }
-        throw new KeyStoreException("No private key entry found in keystore.");
+        return entry;
     }
 
 
@@ -171,13 +165,12 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
         if (privateKey != null) return privateKey;
 
         loadKeyStore();
-        String alias = getSigningAlias();
         try {
-            Key key = keyStore.getKey(alias, cachedPassword);
-            if (!(key instanceof PrivateKey)) {
+            PrivateKey key = aliasIndex.privateKey(getSigningEntry(), cachedPassword);
+            if (key == null) {
                 throw new PrivateKeyAccessException("No private key entry found in keystore.");
             }
-            privateKey = (PrivateKey) key;
+            privateKey = key;
             return privateKey;
         } catch (UnrecoverableKeyException | NoSuchAlgorithmException e) {
             throw new PrivateKeyAccessException("Unable to access private key.", e);
@@ -190,13 +183,7 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
         if (certificate != null) return certificate;
 
         loadKeyStore();
-        String alias = getSigningAlias();
-        Certificate cert = keyStore.getCertificate(alias);
-        if (!(cert instanceof X509Certificate)) {
-            throw new CertificateNotFoundException("Certificate not found in keystore.");
-        }
-
-        certificate = (X509Certificate) cert;
+        certificate = getSigningEntry().getCertificate();
         return certificate;
     }
 
@@ -204,18 +191,13 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
     public Certificate[] getCertificateChain() throws KeyStoreException {
         if (certificateChain != null) return certificateChain;
 
-        String alias = getSigningAlias();
-        Certificate[] chain = keyStore.getCertificateChain(alias);
+        KeyStoreAliasIndex.Entry entry = getSigningEntry();
+        Certificate[] chain = aliasIndex.chain(entry);
 
         if (chain == null || chain.length == 0) {
-            // Fallback: try to get just the single certificate
-            Certificate cert = keyStore.getCertificate(alias);
-            if (cert == null) {
-                throw new KeyStoreException("No certificate found for alias: " + alias);
-            }
-
+            // Fallback: use just the signer certificate
             System.err.println("[WARN] Certificate chain is missing. Using only signer certificate.");
-            chain = new Certificate[]{cert};
+            chain = new Certificate[]{entry.getCertificate()};
         }
 
         certificateChain = chain;
@@ -226,7 +208,10 @@ public class PKCS12KeyStoreProvider implements KeyStoreProvider {
      * Clears the current session (forces password prompt on next operation)
      */
     public void clearSession() {
+        UNLOCKED_PFX.invalidate(pfxFilePath);
+        if (cachedPassword != null) Arrays.fill(cachedPassword, '\0');
         keyStore = null;
+        aliasIndex = null;
         privateKey = null;
         certificate = null;
         certificateChain = null;
@@ -0,0 +1,170 @@
+package com.codemuni.core.keyStoresProvider;
+
+import com.codemuni.config.ConfigManager;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide cache of unlocked PFX (PKCS#12) files, so signing several documents with the same file
+ * asks for the password and runs the expensive PBE key derivation only once.
+ * <p>
+ * Entries are keyed by canonical path and are only valid for the file's modification time and size at unlock;
+ * a replaced file is unlocked again. An entry expires the configured time after it was unlocked (not after
+ * last use), on {@link #clear()} and on JVM shutdown. Expired entries have their password wiped; the JCA key
+ * objects themselves cannot be reliably destroyed and are simply released.
+ */
+public final class PfxUnlockCache {
+
+    private static final Log log = LogFactory.getLog(PfxUnlockCache.class);
+    private static final long REAPER_INTERVAL_SECONDS = 30;
+    private static final PfxUnlockCache INSTANCE = new PfxUnlockCache();
+
+    private final Map<String, UnlockedPfx> entries = new HashMap<>();
+    private ScheduledExecutorService reaper;
+
+    private PfxUnlockCache() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::clear, "pfx-cache-shutdown"));
+    }
+
+    public static PfxUnlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static String keyOf(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Snapshot of the unlocked store of {@code pfxPath}, or null if it is not cached, expired or the file changed
+     * since. The snapshot has its own copy of the password, taken under the cache lock, so an eviction running
+     * right after this call cannot wipe it; the caller wipes the snapshot when done with it.
+     */
+    public synchronized UnlockedPfx get(String pfxPath) {
+        File file = new File(pfxPath);
+        String key = keyOf(file);
+        UnlockedPfx entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.isExpired(System.currentTimeMillis()) || !entry.matches(file)) {
+            entries.remove(key);
+            entry.wipe();
+            return null;
+        }
+        return entry.snapshot();
+    }
+
+    /**
+     * Caches an unlocked store; the cache keeps its own copy of the password. Does nothing if the cache is disabled.
+     */
+    public synchronized void put(String pfxPath, KeyStore keyStore, KeyStoreAliasIndex aliasIndex, char[] password) {
+        long ttlMillis = ConfigManager.getPfxUnlockCacheMillis();
+        if (ttlMillis <= 0) return;
+
+        File file = new File(pfxPath);
+        UnlockedPfx entry = new UnlockedPfx(keyStore, aliasIndex, password.clone(),
+                file.lastModified(), file.length(), System.currentTimeMillis() + ttlMillis);
+        UnlockedPfx previous = entries.put(keyOf(file), entry);
+        if (previous != null) previous.wipe();
+        startReaper();
+    }
+
+    public synchronized void invalidate(String pfxPath) {
+        UnlockedPfx entry = entries.remove(keyOf(new File(pfxPath)));
+        if (entry != null) entry.wipe();
+    }
+
+    /**
+     * Forgets every unlocked file; the next signature asks for the password again.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(UnlockedPfx::wipe);
+        if (!entries.isEmpty()) log.info("Forgot " + entries.size() + " unlocked PFX file(s).");
+        entries.clear();
+    }
+
+    private synchronized void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<UnlockedPfx> it = entries.values().iterator();
+        while (it.hasNext()) {
+            UnlockedPfx entry = it.next();
+            if (entry.isExpired(now)) {
+                it.remove();
+                entry.wipe();
+            }
+        }
+    }
+
+    private void startReaper() {
+        if (reaper != null) return;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pfx-cache-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(this::evictExpired, REAPER_INTERVAL_SECONDS, REAPER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static final class UnlockedPfx {
+        private final KeyStore keyStore;
+        private final KeyStoreAliasIndex aliasIndex;
+        private final char[] password;
+        private final long lastModified;
+        private final long length;
+        private final long expiresAt;
+
+        private UnlockedPfx(KeyStore keyStore, KeyStoreAliasIndex aliasIndex, char[] password,
+                            long lastModified, long length, long expiresAt) {
+            this.keyStore = keyStore;
+            this.aliasIndex = aliasIndex;
+            this.password = password;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        public KeyStore getKeyStore() {
+            return keyStore;
+        }
+
+        public KeyStoreAliasIndex getAliasIndex() {
+            return aliasIndex;
+        }
+
+        /**
+         * Copy of the password; the caller owns (and should wipe) it.
+         */
+        public char[] copyPassword() {
+            return password.clone();
+        }
+
+        private UnlockedPfx snapshot() {
+            return new UnlockedPfx(keyStore, aliasIndex, password.clone(), lastModified, length, expiresAt);
+        }
+
+        private boolean matches(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        void wipe() {
+            Arrays.fill(password, '\0');
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.codemuni.core.keyStoresProvider;
+
+import com.codemuni.core.signer.SignerOptions;
+import com.codemuni.exceptions.KeyStoreInitializationException;
+import com.codemuni.model.KeystoreAndCertificateInfo;
+
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read-only KeyStoreProvider over key material that has already been resolved once.
+ * Used by batch signing so every document reuses the same private key handle and chain
+ * instead of going back to the underlying store (and its PIN/session) per document.
+ */
+public final class SessionKeyStoreProvider implements KeyStoreProvider {
+
+    private final String provider;
+    private final PrivateKey privateKey;
+    private final Certificate[] certificateChain;
+
+    public SessionKeyStoreProvider(SignerOptions signerOptions) {
+        Objects.requireNonNull(signerOptions, "signerOptions must not be null");
+        this.provider = signerOptions.getProvider();
+        this.privateKey = Objects.requireNonNull(signerOptions.getPrivateKey(), "private key must not be null");
+        Certificate[] chain = signerOptions.getCertificateChain();
+        if (chain == null || chain.length == 0) {
+            throw new KeyStoreInitializationException("Certificate chain must not be empty.");
+        }
+        this.certificateChain = chain.clone();
+    }
+
+    /**
+     * Resolves key, chain and provider name from the given (already logged in) provider exactly once.
+     */
+    public static SessionKeyStoreProvider snapshotOf(KeyStoreProvider source) throws Exception {
+        Objects.requireNonNull(source, "source provider must not be null");
+        if (source instanceof SessionKeyStoreProvider) return (SessionKeyStoreProvider) source;
+
+        Certificate[] chain = source.getCertificateChain();
+        PrivateKey key = source.getPrivateKey();
+        return new SessionKeyStoreProvider(new SignerOptions(source.getProvider(), key, chain));
+    }
+
+    @Override
+    public List<KeystoreAndCertificateInfo> loadCertificates() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getProvider() {
+        return provider;
+    }
+
+    @Override
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    @Override
+    public X509Certificate getCertificate() throws KeyStoreException {
+        if (!(certificateChain[0] instanceof X509Certificate)) {
+            throw new KeyStoreException("Signer certificate is not X.509.");
+        }
+        return (X509Certificate) certificateChain[0];
+    }
+
+    @Override
+    public Certificate[] getCertificateChain() {
+        return certificateChain.clone();
+    }
+}
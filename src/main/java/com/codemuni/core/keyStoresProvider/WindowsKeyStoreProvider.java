@@ -25,6 +25,7 @@ public class WindowsKeyStoreProvider extends X509CertificateValidatorImpl implem
     private final String provider = "SunMSCAPI";
     private final BouncyCastleProvider cryptoProvider = new BouncyCastleProvider();
     private String serialHex;
+    private KeyStoreAliasIndex aliasIndex;
 
     public WindowsKeyStoreProvider() throws KeyStoreInitializationException {
         try {
@@ -84,32 +85,34 @@ public class WindowsKeyStoreProvider extends X509CertificateValidatorImpl implem
     }
 
 
-    private String findAliasByCertSerial(String serialHex) throws CertificateNotFoundException, KeyStoreInitializationException {
-        try {
-            Enumeration<String> aliases = keyStore.aliases();
-            while (aliases.hasMoreElements()) {
-                String alias = aliases.nextElement();
-                Certificate cert = keyStore.getCertificate(alias);
-                if (cert instanceof X509Certificate) {
-                    String serial = ((X509Certificate) cert).getSerialNumber().toString(16);
-                    String providedSerialHex = serialHex.startsWith("0") ? serialHex.substring(1) : serialHex;
-
-                    if (serial.equalsIgnoreCase(providedSerialHex)) {
-                        return alias; // Found matching alias, return immediately
-                    }
-                }
+    /**
+     * Index of the store, built on the first lookup; key, certificate and chain of one signature then cost a
+     * single pass over the store instead of one per call.
+     */
+    private synchronized KeyStoreAliasIndex aliasIndex() throws KeyStoreInitializationException {
+        if (aliasIndex == null) {
+            try {
+                aliasIndex = KeyStoreAliasIndex.build(keyStore);
+            } catch (KeyStoreException e) {
+                throw new KeyStoreInitializationException("Error indexing Windows keystore", e);
             }
+        }
+        return aliasIndex;
+    }
+
+    private KeyStoreAliasIndex.Entry findEntryByCertSerial(String serialHex) throws CertificateNotFoundException, KeyStoreInitializationException {
+        KeyStoreAliasIndex.Entry entry = aliasIndex().findBySerialHex(serialHex);
+        if (entry == null) {
             throw new CertificateNotFoundException(String.format("Certificate with serial %s not found", serialHex));
-        } catch (KeyStoreException e) {
-            throw new KeyStoreInitializationException("Error searching for alias", e);
         }
+        return entry;
     }
 
 
     public PrivateKey getPrivateKey() throws KeyStoreInitializationException, CertificateNotFoundException, PrivateKeyAccessException {
         try {
-            String alias = findAliasByCertSerial(serialHex);
-            return (PrivateKey) keyStore.getKey(alias, null);
+            KeyStoreAliasIndex.Entry entry = findEntryByCertSerial(serialHex);
+            return aliasIndex().privateKey(entry, null);
         } catch (UnrecoverableKeyException e) {
             throw new PrivateKeyAccessException("Invalid PIN or access denied to private key", e);
         } catch (KeyStoreException | NoSuchAlgorithmException e) {
@@ -118,23 +121,17 @@ public class WindowsKeyStoreProvider extends X509CertificateValidatorImpl implem
     }
 
     public X509Certificate getCertificate() throws KeyStoreInitializationException, CertificateNotFoundException {
-        try {
-            String alias = findAliasByCertSerial(serialHex);
-            Certificate cert = keyStore.getCertificate(alias);
-            if (cert instanceof X509Certificate) {
-                return (X509Certificate) cert;
-            } else {
-                throw new CertificateNotFoundException("Certificate not found or not X509");
-            }
-        } catch (KeyStoreException e) {
-            throw new KeyStoreInitializationException("Failed to fetch certificate: " + e.getMessage(), e);
-        }
+        return findEntryByCertSerial(serialHex).getCertificate();
     }
 
     public X509Certificate[] getCertificateChain() throws KeyStoreException {
-        String alias = findAliasByCertSerial(serialHex);
-        return Arrays.stream(keyStore.getCertificateChain(alias))
+        KeyStoreAliasIndex.Entry entry = findEntryByCertSerial(serialHex);
+        Certificate[] chain = aliasIndex().chain(entry);
+        if (chain == null) {
+            throw new KeyStoreException("No certificate chain found for alias: " + entry.getAlias());
+        }
+        return Arrays.stream(chain)
                 .map(cert -> (X509Certificate) cert)
                 .toArray(X509Certificate[]::new);
     }
-}
\ No newline at end of file
+}
@@ -25,6 +25,27 @@ public class AppearanceOptions {
     public AppearanceOptions() {
     }
 
+    /**
+     * Copy constructor. The watermark image is duplicated because signing scales and positions it in place,
+     * which must not be shared between documents signed concurrently.
+     */
+    public AppearanceOptions(AppearanceOptions other) {
+        this.isGraphicRendering = other.isGraphicRendering;
+        this.includeEntireSubject = other.includeEntireSubject;
+        this.graphicImagePath = other.graphicImagePath;
+        this.certificationLevel = other.certificationLevel;
+        this.includeCompany = other.includeCompany;
+        this.reason = other.reason;
+        this.location = other.location;
+        this.customText = other.customText;
+        this.ltvEnabled = other.ltvEnabled;
+        this.timestampEnabled = other.timestampEnabled;
+        this.greenTickEnabled = other.greenTickEnabled;
+        this.pageNumber = other.pageNumber;
+        this.coordinates = other.coordinates != null ? other.coordinates.clone() : null;
+        this.watermarkImage = other.watermarkImage != null ? Image.getInstance(other.watermarkImage) : null;
+    }
+
     public Image getWatermarkImage() {
         return watermarkImage;
     }
@@ -0,0 +1,82 @@
+package com.codemuni.core.signer;
+
+import com.itextpdf.text.pdf.security.CertificateUtil;
+import com.itextpdf.text.pdf.security.CrlClient;
+import com.itextpdf.text.pdf.security.CrlClientOnline;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drop-in for {@link CrlClientOnline#CrlClientOnline(Certificate[])}: collects the CRL distribution points of a
+ * chain, but serves the CRLs through the shared {@link CrlCache} instead of downloading them for every signature.
+ */
+public class CachingCrlClient implements CrlClient {
+
+    private static final Log log = LogFactory.getLog(CachingCrlClient.class);
+
+    private final CrlCache cache;
+    private final Set<String> urls = new LinkedHashSet<>();
+
+    /**
+     * Client that fetches the CRL of whichever certificate it is asked about.
+     */
+    public CachingCrlClient() {
+        this(new Certificate[0]);
+    }
+
+    public CachingCrlClient(Certificate[] chain) {
+        this(chain, CrlCache.getInstance());
+    }
+
+    public CachingCrlClient(Certificate[] chain, CrlCache cache) {
+        this.cache = cache;
+        for (Certificate certificate : chain) {
+            if (certificate instanceof X509Certificate) {
+                String url = distributionPoint((X509Certificate) certificate);
+                if (url != null) urls.add(url);
+            }
+        }
+    }
+
+    /**
+     * CRLs of {@code url} if given, else of the chain's distribution points, else of {@code checkCert}'s.
+     */
+    @Override
+    public Collection<byte[]> getEncoded(X509Certificate checkCert, String url) {
+        if (checkCert == null) return null;
+        List<String> sources = new ArrayList<>();
+        if (url != null) {
+            sources.add(url);
+        } else if (!urls.isEmpty()) {
+            sources.addAll(urls);
+        } else {
+            String own = distributionPoint(checkCert);
+            if (own != null) sources.add(own);
+        }
+
+        List<byte[]> crls = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            byte[] crl = cache.get(source);
+            if (crl != null) crls.add(crl);
+        }
+        return crls;
+    }
+
+    private static String distributionPoint(X509Certificate certificate) {
+        try {
+            return CertificateUtil.getCRLURL(certificate);
+        } catch (CertificateParsingException e) {
+            log.warn("Unreadable CRL distribution point in " + certificate.getSubjectX500Principal() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.utils.AppConstants;
+import com.itextpdf.text.pdf.security.OcspClient;
+import com.itextpdf.text.pdf.security.OcspClientBouncyCastle;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.ocsp.BasicOCSPResponse;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * {@link OcspClient} that reuses a good OCSP response for as long as the responder declared it valid.
+ * <p>
+ * Responses are keyed by (issuer certificate, serial) and kept in memory and as raw DER under
+ * {@link AppConstants#OCSP_CACHE_DIR_PATH}, so they also survive a restart. An entry is served until its
+ * {@code nextUpdate}; responses without one are kept for {@link #DEFAULT_VALIDITY_MILLIS} after their {@code thisUpdate}.
+ * Once three quarters of that window have passed, the cached response is still returned and a fresh one is fetched
+ * in the background. Concurrent requests for the same certificate share one download, so a batch makes a single
+ * OCSP call per certificate per validity window; at most one background refresh per certificate is queued at a
+ * time. Only responses with status good are cached.
+ */
+public class CachingOcspClient implements OcspClient {
+
+    static final long DEFAULT_VALIDITY_MILLIS = 60L * 60 * 1000;
+    private static final Log log = LogFactory.getLog(CachingOcspClient.class);
+    private static final String FILE_SUFFIX = ".ocsp";
+    private static final CachingOcspClient INSTANCE =
+            new CachingOcspClient(AppConstants.OCSP_CACHE_DIR_PATH, new OcspClientBouncyCastle(null));
+
+    private final Path directory;
+    private final OcspClientBouncyCastle delegate;
+    private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ocsp-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CachingOcspClient(Path directory, OcspClientBouncyCastle delegate) {
+        this.directory = directory;
+        this.delegate = delegate;
+    }
+
+    public static CachingOcspClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encoded BasicOCSPResponse for {@code checkCert}, from the cache when still valid; null if the responder
+     * could not be reached or did not report the certificate as good.
+     */
+    @Override
+    public byte[] getEncoded(X509Certificate checkCert, X509Certificate rootCert, String url) {
+        if (checkCert == null || rootCert == null) return null;
+        String key;
+        try {
+            key = keyOf(checkCert, rootCert);
+        } catch (CertificateEncodingException e) {
+            log.warn("Cannot key OCSP response for " + checkCert.getSubjectX500Principal() + ": " + e.getMessage());
+            return delegate.getEncoded(checkCert, rootCert, url);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedResponse cached = cached(key, now);
+        if (cached != null) {
+            if (now >= cached.refreshAt && refreshing.add(key)) {
+                refresher.execute(() -> refresh(key, cached, checkCert, rootCert, url));
+            }
+            return cached.encoded.clone();
+        }
+
+        CachedResponse fetched = fetch(key, checkCert, rootCert, url);
+        return fetched != null ? fetched.encoded.clone() : null;
+    }
+
+    /**
+     * Forgets every cached response, in memory and on disk.
+     */
+    public void clear() {
+        responses.clear();
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clear OCSP cache " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private CachedResponse cached(String key, long now) {
+        CachedResponse entry = responses.get(key);
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) responses.put(key, entry);
+        }
+        if (entry != null && now >= entry.expiresAt) {
+            responses.remove(key, entry);
+            deleteFromDisk(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void refresh(String key, CachedResponse stale, X509Certificate checkCert, X509Certificate rootCert, String url) {
+        try {
+            // A foreground fetch may have replaced the entry since the refresh was queued
+            CachedResponse current = responses.get(key);
+            if (current == null || current == stale) {
+                fetch(key, checkCert, rootCert, url);
+            }
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Downloads and caches the response; a download already running for the same certificate is joined instead.
+     */
+    private CachedResponse fetch(String key, X509Certificate checkCert, X509Certificate rootCert, String url) {
+        CompletableFuture<CachedResponse> mine = new CompletableFuture<>();
+        CompletableFuture<CachedResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        CachedResponse entry = null;
+        try {
+            entry = download(checkCert, rootCert, url);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                responses.put(key, entry);
+                writeToDisk(key, entry.encoded);
+            }
+        } catch (Exception e) {
+            log.warn("OCSP request for " + checkCert.getSubjectX500Principal() + " failed: " + e.getMessage());
+        } finally {
+            mine.complete(entry);
+            inFlight.remove(key, mine);
+        }
+        return entry;
+    }
+
+    private CachedResponse download(X509Certificate checkCert, X509Certificate rootCert, String url) throws IOException {
+        BasicOCSPResp response = delegate.getBasicOCSPResp(checkCert, rootCert, url);
+        if (response == null) return null;
+        CachedResponse entry = CachedResponse.of(response, checkCert.getSerialNumber(), System.currentTimeMillis());
+        if (entry == null) {
+            log.warn("OCSP responder did not report " + checkCert.getSubjectX500Principal() + " as good; not embedding a response.");
+            return null;
+        }
+        log.debug("Fetched OCSP response for " + checkCert.getSubjectX500Principal() + ", valid until " + new Date(entry.expiresAt));
+        return entry;
+    }
+
+    private CachedResponse readFromDisk(String key) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            BasicOCSPResp response = new BasicOCSPResp(BasicOCSPResponse.getInstance(Files.readAllBytes(file)));
+            BigInteger serial = new BigInteger(key.substring(key.lastIndexOf('-') + 1), 16);
+            return CachedResponse.of(response, serial, Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable cached OCSP response " + file + ": " + e.getMessage());
+            deleteFromDisk(key);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] encoded) {
+        try {
+            Files.createDirectories(directory);
+            // Written next to the target and moved into place, so readers never see a partial file.
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.write(tmp, encoded);
+                Files.move(tmp, directory.resolve(key + FILE_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to cache OCSP response in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteFromDisk(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + FILE_SUFFIX));
+        } catch (IOException e) {
+            log.debug("Failed to delete cached OCSP response " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * {@code <sha-256 of the issuer certificate>-<serial in hex>}; usable as a file name.
+     */
+    private static String keyOf(X509Certificate checkCert, X509Certificate issuerCert) throws CertificateEncodingException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest(issuerCert.getEncoded())) {
+            key.append(String.format("%02x", b));
+        }
+        return key.append('-').append(checkCert.getSerialNumber().toString(16)).toString();
+    }
+
+    private static final class CachedResponse {
+        private final byte[] encoded;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private CachedResponse(byte[] encoded, long expiresAt, long refreshAt) {
+            this.encoded = encoded;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        /**
+         * Entry for the single response about {@code serial} if its status is good, otherwise null.
+         */
+        static CachedResponse of(BasicOCSPResp response, BigInteger serial, long fetchedAt) throws IOException {
+            for (SingleResp single : response.getResponses()) {
+                if (!serial.equals(single.getCertID().getSerialNumber())) continue;
+                if (single.getCertStatus() != CertificateStatus.GOOD) return null;
+
+                Date nextUpdate = single.getNextUpdate();
+                long expiresAt = nextUpdate != null
+                        ? nextUpdate.getTime()
+                        : single.getThisUpdate().getTime() + DEFAULT_VALIDITY_MILLIS;
+                long refreshAt = fetchedAt + (expiresAt - fetchedAt) * 3 / 4;
+                return new CachedResponse(response.getEncoded(), expiresAt, refreshAt);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.utils.AppConstants;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Process-wide cache of downloaded CRLs, shared by every {@link CachingCrlClient}.
+ * <p>
+ * Layout: {@code <root>/<sha256 of the URL>.crl} holds the CRL exactly as served, and a {@code .yml} sidecar
+ * its URL, validity and HTTP validators. A CRL is served from the cache until its {@code nextUpdate} (an hour after
+ * download if it has none). After that it is revalidated with {@code If-None-Match}/{@code If-Modified-Since}: a
+ * 304 keeps the stored bytes, and a CA that has not published yet is only asked again after
+ * {@link #RECHECK_MILLIS}. If the distribution point cannot be reached, the last stored CRL is used, but no CRL is
+ * handed out more than {@link #STALE_GRACE_MILLIS} past its {@code nextUpdate}: embedding it as LTV evidence would
+ * only record that revocation status was unknown. Concurrent requests for one URL share a single download.
+ */
+public final class CrlCache {
+
+    static final long DEFAULT_VALIDITY_MILLIS = 60L * 60 * 1000;
+    static final long RECHECK_MILLIS = 10L * 60 * 1000;
+    static final long STALE_GRACE_MILLIS = 24L * 60 * 60 * 1000;
+    private static final Log log = LogFactory.getLog(CrlCache.class);
+    private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+    private static final CrlCache INSTANCE = new CrlCache(AppConstants.CRL_CACHE_DIR_PATH);
+
+    private final Path directory;
+    private final Map<String, CachedCrl> crls = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedCrl>> inFlight = new ConcurrentHashMap<>();
+
+    public CrlCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static CrlCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Encoded CRL published at {@code url}: cached while fresh, otherwise revalidated or downloaded.
+     * Null if it was never obtained and cannot be downloaded now, or if the only copy is too long expired.
+     */
+    public byte[] get(String url) {
+        String key = keyOf(url);
+        CachedCrl cached = cached(key);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            return usable(cached, url);
+        }
+
+        CompletableFuture<CachedCrl> mine = new CompletableFuture<>();
+        CompletableFuture<CachedCrl> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return usable(running.get(), url);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return usable(cached, url);
+            } catch (ExecutionException e) {
+                return usable(cached, url);
+            }
+        }
+
+        CachedCrl result = cached;
+        try {
+            result = refresh(key, url, cached);
+        } catch (IOException | CertificateException | CRLException e) {
+            if (cached != null) {
+                log.warn("Could not refresh CRL " + url + " (" + e.getMessage() + "); using the copy from "
+                        + new Date(cached.meta.checkedAt));
+            } else {
+                log.warn("Could not download CRL " + url + ": " + e.getMessage());
+            }
+        } finally {
+            mine.complete(result);
+            inFlight.remove(key, mine);
+        }
+        return usable(result, url);
+    }
+
+    private static byte[] usable(CachedCrl entry, String url) {
+        if (entry == null) return null;
+        if (entry.isTooStale(System.currentTimeMillis())) {
+            log.warn("CRL " + url + " expired " + new Date(entry.validUntil()) + " and no newer one is available; not using it.");
+            return null;
+        }
+        return entry.encoded;
+    }
+
+    private CachedCrl cached(String key) {
+        CachedCrl entry = crls.get(key);
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) crls.put(key, entry);
+        }
+        return entry;
+    }
+
+    private CachedCrl refresh(String key, String url, CachedCrl cached) throws IOException, CertificateException, CRLException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        if (cached != null) {
+            if (cached.meta.etag != null) connection.setRequestProperty("If-None-Match", cached.meta.etag);
+            if (cached.meta.lastModified != null) connection.setRequestProperty("If-Modified-Since", cached.meta.lastModified);
+        }
+
+        try {
+            int status = connection.getResponseCode();
+            long now = System.currentTimeMillis();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                cached.meta.checkedAt = now;
+                writeMeta(key, cached.meta);
+                log.debug("CRL " + url + " not modified");
+                return cached;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " " + connection.getResponseMessage());
+            }
+
+            byte[] encoded;
+            try (InputStream in = connection.getInputStream()) {
+                encoded = readAll(in);
+            }
+            X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(encoded));
+
+            CrlMeta meta = new CrlMeta();
+            meta.url = url;
+            meta.etag = connection.getHeaderField("ETag");
+            meta.lastModified = connection.getHeaderField("Last-Modified");
+            meta.thisUpdate = crl.getThisUpdate().getTime();
+            meta.nextUpdate = crl.getNextUpdate() != null ? crl.getNextUpdate().getTime() : 0;
+            meta.checkedAt = now;
+
+            CachedCrl entry = new CachedCrl(encoded, meta);
+            crls.put(key, entry);
+            writeToDisk(key, entry);
+            log.debug("Downloaded CRL " + url + " (" + encoded.length + " bytes), next update "
+                    + (meta.nextUpdate > 0 ? new Date(meta.nextUpdate) : "not given"));
+            return entry;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private CachedCrl readFromDisk(String key) {
+        Path crlFile = directory.resolve(key + ".crl");
+        Path metaFile = directory.resolve(key + ".yml");
+        if (!Files.isRegularFile(crlFile) || !Files.isRegularFile(metaFile)) return null;
+        try {
+            return new CachedCrl(Files.readAllBytes(crlFile), mapper.readValue(metaFile.toFile(), CrlMeta.class));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cached CRL " + crlFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedCrl entry) {
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory.resolve(key + ".crl"), entry.encoded);
+            writeMeta(key, entry.meta);
+        } catch (IOException e) {
+            log.warn("Failed to cache CRL " + entry.meta.url + ": " + e.getMessage());
+        }
+    }
+
+    private void writeMeta(String key, CrlMeta meta) {
+        try {
+            Files.createDirectories(directory);
+            writeAtomically(directory.resolve(key + ".yml"), mapper.writeValueAsBytes(meta));
+        } catch (IOException e) {
+            log.warn("Failed to store CRL metadata for " + meta.url + ": " + e.getMessage());
+        }
+    }
+
+    // Written next to the target and moved into place, so readers never see a partial file.
+    private void writeAtomically(Path target, byte[] content) throws IOException {
+        Path tmp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String keyOf(String url) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(url.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static final class CachedCrl {
+        private final byte[] encoded;
+        private final CrlMeta meta;
+
+        private CachedCrl(byte[] encoded, CrlMeta meta) {
+            this.encoded = encoded;
+            this.meta = meta;
+        }
+
+        private long validUntil() {
+            return meta.nextUpdate > 0 ? meta.nextUpdate : meta.checkedAt + DEFAULT_VALIDITY_MILLIS;
+        }
+
+        private boolean isFresh(long now) {
+            return now < validUntil() || now < meta.checkedAt + RECHECK_MILLIS;
+        }
+
+        private boolean isTooStale(long now) {
+            // Without nextUpdate, the validity counts from the last successful check
+            return now >= validUntil() + STALE_GRACE_MILLIS;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CrlMeta {
+        @JsonProperty("URL")
+        public String url;
+
+        @JsonProperty("ETAG")
+        public String etag;
+
+        @JsonProperty("LAST_MODIFIED")
+        public String lastModified;
+
+        @JsonProperty("THIS_UPDATE")
+        public long thisUpdate;
+
+        @JsonProperty("NEXT_UPDATE")
+        public long nextUpdate;
+
+        @JsonProperty("CHECKED_AT")
+        public long checkedAt;
+    }
+}
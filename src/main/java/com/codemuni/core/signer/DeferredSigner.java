@@ -0,0 +1,137 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.exceptions.SigningProcessException;
+import com.itextpdf.text.pdf.*;
+import com.itextpdf.text.pdf.security.*;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+
+/**
+ * Two-phase signing: the document and the key never have to be in the same process.
+ * <ol>
+ * <li>{@link #prepare} writes the PDF with its signature field and an empty container, and returns the
+ * ByteRange digest. No key is involved, so preparation can run on any core or machine.</li>
+ * <li>{@link #createSignatureContainer} turns a digest into a CAdES CMS with the key, e.g. on a signing
+ * host or in a batch over one token session.</li>
+ * <li>{@link #complete} injects that CMS into the prepared PDF ({@link MakeSignature#signDeferred}).</li>
+ * </ol>
+ */
+public class DeferredSigner {
+
+    public static final String HASH_ALGORITHM = DigestAlgorithms.SHA256;
+    private static final Log log = LogFactory.getLog(DeferredSigner.class);
+
+    /**
+     * Phase 1: writes the document with a visible signature field and {@code containerSize} bytes reserved
+     * for the CMS to {@code out} (not closed). The appearance (watermark, ESIC extension included) is the one
+     * {@link Signer} produces. The reader is closed.
+     *
+     * @param chain certificate chain of the future signer; only used for the appearance and the signer field
+     */
+    public PreparedSignature prepare(PdfReader reader, Certificate[] chain, AppearanceOptions options,
+                                     int containerSize, OutputStream out) {
+        Path tempFile = null;
+        try {
+            // Assembled on disk and copied to out when the container is reserved, not held in a heap buffer
+            tempFile = Files.createTempFile("emark-prepare", ".pdf");
+            PdfStamper stamper = PdfStamper.createSignature(reader, out, '\0', tempFile.toFile(), true);
+            PdfSignatureAppearance appearance = stamper.getSignatureAppearance();
+            Signer.applyAppearance(appearance, new SignatureAppearanceHandler((X509Certificate) chain[0], options), options);
+            appearance.setCertificate(chain[0]);
+
+            DigestCapturingContainer container = new DigestCapturingContainer();
+            MakeSignature.signExternalContainer(appearance, container, containerSize);
+            return new PreparedSignature(appearance.getFieldName(), container.digest, HASH_ALGORITHM, containerSize);
+        } catch (Exception e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Preparing PDF for signing failed", e), e);
+        } finally {
+            reader.close();
+            Signer.deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * Phase 2: CAdES detached CMS over a prepared document's digest. {@code tsaClient}, {@code ocsp} and
+     * {@code crlBytes} may be null.
+     *
+     * @throws IllegalArgumentException if {@code signature} does not hash with {@link #HASH_ALGORITHM}, the
+     *                                  algorithm of the document digest; the CMS would not verify
+     */
+    public static byte[] createSignatureContainer(byte[] documentDigest, Certificate[] chain,
+                                                  ExternalSignature signature, ExternalDigest externalDigest,
+                                                  TSAClient tsaClient, byte[] ocsp, Collection<byte[]> crlBytes)
+            throws GeneralSecurityException {
+        if (!sameDigest(HASH_ALGORITHM, signature.getHashAlgorithm())) {
+            throw new IllegalArgumentException("Signature hashes with " + signature.getHashAlgorithm()
+                    + " but the document digest is " + HASH_ALGORITHM + ".");
+        }
+        PdfPKCS7 sgn = new PdfPKCS7(null, chain, signature.getHashAlgorithm(), null, externalDigest, false);
+        byte[] authenticatedAttributes = sgn.getAuthenticatedAttributeBytes(
+                documentDigest, ocsp, crlBytes, MakeSignature.CryptoStandard.CADES);
+        byte[] signatureValue = signature.sign(authenticatedAttributes);
+        sgn.setExternalDigest(signatureValue, null, signature.getEncryptionAlgorithm());
+        return sgn.getEncodedPKCS7(documentDigest, tsaClient, ocsp, crlBytes, MakeSignature.CryptoStandard.CADES);
+    }
+
+    private static boolean sameDigest(String a, String b) {
+        String oid = DigestAlgorithms.getAllowedDigests(a);
+        return oid != null && oid.equals(DigestAlgorithms.getAllowedDigests(b));
+    }
+
+    /**
+     * Phase 3: writes {@code preparedReader}'s document with {@code cms} in the reserved container to
+     * {@code out} (not closed). Fails if the CMS is larger than the space reserved in phase 1.
+     */
+    public void complete(PdfReader preparedReader, String fieldName, byte[] cms, OutputStream out) {
+        try {
+            MakeSignature.signDeferred(preparedReader, fieldName, out, new ExternalSignatureContainer() {
+                @Override
+                public byte[] sign(InputStream data) {
+                    return cms;
+                }
+
+                @Override
+                public void modifySigningDictionary(PdfDictionary signDic) {
+                }
+            });
+            log.debug("Injected " + cms.length + " byte signature into field " + fieldName);
+        } catch (Exception e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Embedding deferred signature failed", e), e);
+        } finally {
+            preparedReader.close();
+        }
+    }
+
+    /**
+     * Reserves the container and records the ByteRange digest instead of signing.
+     */
+    private static final class DigestCapturingContainer implements ExternalSignatureContainer {
+        private byte[] digest;
+
+        @Override
+        public byte[] sign(InputStream data) throws GeneralSecurityException {
+            try {
+                digest = DigestAlgorithms.digest(data, new BouncyCastleDigest().getMessageDigest(HASH_ALGORITHM));
+            } catch (IOException e) {
+                throw new GeneralSecurityException("Unable to hash document", e);
+            }
+            return new byte[0];
+        }
+
+        @Override
+        public void modifySigningDictionary(PdfDictionary signDic) {
+            signDic.put(PdfName.FILTER, PdfName.ADOBE_PPKLITE);
+            signDic.put(PdfName.SUBFILTER, PdfName.ETSI_CADES_DETACHED);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.config.ConfigManager;
+import com.codemuni.exceptions.TSAConfigurationException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.cmp.PKIStatus;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Timestamp client over an ordered list of TSA URLs, meant to be created once and reused for many signatures.
+ * <p>
+ * A request goes to the first URL. If it has not answered within the hedge delay, the same request is also
+ * sent to the next URL and the first valid reply wins; a URL that fails outright hands over to the next one
+ * immediately. Once every URL was tried, the first one gets one more attempt. Any URL of the list answers for
+ * the same request, so the token is checked against it exactly as with a single TSA. A reply only counts once it
+ * parses as an RFC 3161 response granting this very request: a TSA answering HTTP 200 with a rejection status or
+ * an unusable body is treated like one that failed, so the next URL (or the hedged request) takes over.
+ * <p>
+ * Connections are kept alive between requests (responses are read completely and never forcibly disconnected),
+ * so consecutive timestamps to the same TSA skip the TCP and TLS handshakes. Latency and failures of every URL are
+ * recorded in {@link TsaEndpointStats}. Credentials are only sent to the first URL.
+ */
+public class FailoverTSAClient extends CustomTSAClientBouncyCastle {
+
+    private static final Log log = LogFactory.getLog(FailoverTSAClient.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int TOKEN_SIZE_ESTIMATE = 8192;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final ExecutorService REQUESTS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "tsa-request");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static FailoverTSAClient shared;
+    private static List<Object> sharedConfig;
+
+    private final List<String> urls;
+    private final long hedgeAfterMillis;
+
+    public FailoverTSAClient(List<String> urls, String username, String password, long hedgeAfterMillis) {
+        super(firstUrl(urls), username, password, TOKEN_SIZE_ESTIMATE, DIGEST_ALGORITHM);
+        this.urls = Collections.unmodifiableList(new ArrayList<>(urls));
+        this.hedgeAfterMillis = Math.max(0, hedgeAfterMillis);
+    }
+
+    /**
+     * Client for the configured timestamp server(s), reused for as long as the configuration is unchanged. The
+     * {@code url} entry may list several URLs, in order of preference, separated by commas, semicolons or whitespace.
+     */
+    public static synchronized FailoverTSAClient shared() {
+        Map<String, String> tsaConfig = ConfigManager.getTimestampServer();
+        List<Object> config = Arrays.asList(tsaConfig.get("url"), tsaConfig.get("username"), tsaConfig.get("password"),
+                ConfigManager.getTsaHedgeAfterMillis());
+        if (shared == null || !config.equals(sharedConfig)) {
+            shared = new FailoverTSAClient(
+                    parseUrls(tsaConfig.get("url")),
+                    tsaConfig.getOrDefault("username", null),
+                    tsaConfig.getOrDefault("password", null),
+                    ConfigManager.getTsaHedgeAfterMillis());
+            sharedConfig = config;
+        }
+        return shared;
+    }
+
+    public static List<String> parseUrls(String value) {
+        List<String> urls = new ArrayList<>();
+        if (value == null) return urls;
+        for (String url : value.trim().split("[,;\\s]+")) {
+            if (!url.isEmpty() && !urls.contains(url)) urls.add(url);
+        }
+        return urls;
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    @Override
+    protected byte[] getTSAResponse(byte[] requestBytes) throws IOException {
+        List<String> attempts = new ArrayList<>(urls);
+        attempts.add(urls.get(0)); // one retry of the preferred TSA when everything failed
+
+        CompletionService<byte[]> completion = new ExecutorCompletionService<>(REQUESTS);
+        List<Future<byte[]>> started = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS + READ_TIMEOUT_MILLIS;
+        IOException failure = null;
+        int next = 0;
+        int running = 0;
+
+        try {
+            started.add(completion.submit(post(attempts.get(next++), requestBytes)));
+            running++;
+            while (running > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                boolean canHedge = next < attempts.size() - 1; // the retry is for failures, not for slowness
+                Future<byte[]> done = completion.poll(canHedge ? Math.min(hedgeAfterMillis, remaining) : remaining,
+                        TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    if (canHedge) {
+                        log.info("Timestamp server " + attempts.get(next - 1) + " has not answered within "
+                                + hedgeAfterMillis + " ms; also asking " + attempts.get(next));
+                        started.add(completion.submit(post(attempts.get(next++), requestBytes)));
+                        running++;
+                    }
+                    continue;
+                }
+
+                running--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+                    if (running == 0 && next < attempts.size()) {
+                        log.warn("Timestamp request failed (" + cause.getMessage() + "); trying " + attempts.get(next));
+                        started.add(completion.submit(post(attempts.get(next++), requestBytes)));
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the timestamp server", e);
+        } finally {
+            // Losers finish in the background: their connection goes back to the keep-alive cache
+            for (Future<byte[]> future : started) future.cancel(false);
+        }
+
+        if (failure != null) throw failure;
+        throw new IOException("No timestamp server answered within " + (CONNECT_TIMEOUT_MILLIS + READ_TIMEOUT_MILLIS) + " ms");
+    }
+
+    private Callable<byte[]> post(String url, byte[] requestBytes) {
+        return () -> {
+            TsaEndpointStats stats = TsaEndpointStats.forUrl(url);
+            long start = System.nanoTime();
+            try {
+                byte[] response = send(url, requestBytes);
+                TimeStampResponse granted = checkResponse(url, requestBytes, response);
+                stats.recordSuccess((System.nanoTime() - start) / 1_000_000);
+                stats.recordTokenSize(granted.getTimeStampToken().getEncoded().length);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                stats.recordFailure();
+                throw e;
+            }
+        };
+    }
+
+    private byte[] send(String url, byte[] requestBytes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setDoOutput(true);
+        connection.setUseCaches(false);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/timestamp-query");
+        connection.setRequestProperty("Content-Transfer-Encoding", "binary");
+        connection.setFixedLengthStreamingMode(requestBytes.length);
+        if (url.equals(tsaURL) && tsaUsername != null && !tsaUsername.isEmpty()) {
+            String credentials = tsaUsername + ":" + (tsaPassword != null ? tsaPassword : "");
+            connection.setRequestProperty("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(requestBytes);
+        }
+
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            // Drain the error body so the connection can still be reused
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    readAll(in);
+                }
+            }
+            throw new IOException(url + " answered HTTP " + status + " " + connection.getResponseMessage());
+        }
+
+        byte[] response;
+        try (InputStream in = connection.getInputStream()) {
+            response = readAll(in);
+        }
+        String encoding = connection.getContentEncoding();
+        if (encoding == null) encoding = connection.getHeaderField("Content-Transfer-Encoding");
+        if ("base64".equalsIgnoreCase(encoding)) {
+            response = Base64.getMimeDecoder().decode(response);
+        }
+        return response;
+    }
+
+    /**
+     * Fails unless {@code responseBytes} is a time-stamp response that grants the request and whose token matches it.
+     */
+    private static TimeStampResponse checkResponse(String url, byte[] requestBytes, byte[] responseBytes) throws IOException {
+        TimeStampResponse response;
+        try {
+            response = new TimeStampResponse(responseBytes);
+        } catch (TSPException | IOException | RuntimeException e) {
+            throw new IOException(url + " did not answer with a time-stamp response: " + e.getMessage(), e);
+        }
+        int status = response.getStatus();
+        if (status != PKIStatus.GRANTED && status != PKIStatus.GRANTED_WITH_MODS) {
+            String reason = response.getStatusString() != null ? response.getStatusString()
+                    : response.getFailInfo() != null ? "failure info " + response.getFailInfo().intValue() : "no reason given";
+            throw new IOException(url + " rejected the time-stamp request (status " + status + ", " + reason + ")");
+        }
+        try {
+            response.validate(new TimeStampRequest(requestBytes));
+        } catch (TSPException | RuntimeException e) {
+            throw new IOException(url + " sent a time-stamp response that does not match the request: " + e.getMessage(), e);
+        }
+        return response;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String firstUrl(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new TSAConfigurationException("TSA URL must not be null or empty.");
+        }
+        for (String url : urls) {
+            if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                throw new TSAConfigurationException("TSA URL must start with http:// or https://: " + url);
+            }
+        }
+        return urls.get(0);
+    }
+}
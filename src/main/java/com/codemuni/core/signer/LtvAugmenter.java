@@ -0,0 +1,172 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.exceptions.NotADigitalSignatureException;
+import com.codemuni.exceptions.SigningProcessException;
+import com.itextpdf.text.pdf.AcroFields;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfSignatureAppearance;
+import com.itextpdf.text.pdf.PdfStamper;
+import com.itextpdf.text.pdf.security.*;
+import com.itextpdf.text.pdf.security.LtvVerification.CertificateInclusion;
+import com.itextpdf.text.pdf.security.LtvVerification.CertificateOption;
+import com.itextpdf.text.pdf.security.LtvVerification.Level;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+/**
+ * Adds long-term validation material to an already signed PDF, without the signing key.
+ * <p>
+ * In one incremental update it appends a DSS dictionary (certificates, OCSP responses and, where OCSP is not
+ * available, CRLs, with a VRI entry per signature) and, if a TSA client is given, a document timestamp over the
+ * whole file (PAdES-LTA). Existing signatures stay valid. Running it again on its own output validates the previous
+ * document timestamp and adds a new one, which is how an archive is re-timestamped before the old TSA certificate
+ * expires. Revocation data comes from the shared {@link CachingOcspClient} and {@link CrlCache}.
+ */
+public class LtvAugmenter {
+
+    private static final Log log = LogFactory.getLog(LtvAugmenter.class);
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final TSAClient tsaClient;
+    private final OcspClient ocspClient;
+    private final CrlClient crlClient;
+
+    /**
+     * @param tsaClient timestamp client for the document timestamp, or null to add the DSS only
+     */
+    public LtvAugmenter(TSAClient tsaClient) {
+        this(tsaClient, CachingOcspClient.getInstance(), new CachingCrlClient());
+    }
+
+    public LtvAugmenter(TSAClient tsaClient, OcspClient ocspClient, CrlClient crlClient) {
+        this.tsaClient = tsaClient;
+        this.ocspClient = ocspClient;
+        this.crlClient = crlClient;
+    }
+
+    /**
+     * Augments the document into {@code target} through a temporary file next to it, so a failure never leaves
+     * a truncated PDF behind. The reader is closed.
+     */
+    public void augment(PdfReader reader, Path target) throws NotADigitalSignatureException {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName().toString(), ".tmp");
+            augment(reader, null, tempFile.toFile());
+            Signer.moveReplacing(tempFile, target);
+            tempFile = null;
+        } catch (IOException e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Writing augmented PDF failed", e), e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * Writes the document with the appended DSS (and document timestamp) to {@code out}, which is not closed.
+     * The reader is closed.
+     *
+     * @throws NotADigitalSignatureException if the document has no signature to validate
+     */
+    public void augment(PdfReader reader, OutputStream out) throws NotADigitalSignatureException {
+        if (tsaClient == null) {
+            augment(reader, out, null);
+            return;
+        }
+        Path tempFile = null;
+        try {
+            // The document timestamp needs the finished file to hash; iText keeps it here instead of on the heap
+            tempFile = Files.createTempFile("emark-ltv", ".pdf");
+            augment(reader, out, tempFile.toFile());
+        } catch (IOException e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Creating temporary file failed", e), e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * @param out      receives the augmented document, or null to write it to {@code tempFile} only
+     * @param tempFile file the document is assembled in; required when a document timestamp is added or
+     *                 {@code out} is null
+     */
+    private void augment(PdfReader reader, OutputStream out, File tempFile) throws NotADigitalSignatureException {
+        OutputStream fileOut = null;
+        try {
+            AcroFields fields = reader.getAcroFields();
+            List<String> names = fields.getSignatureNames();
+            if (names.isEmpty()) {
+                throw new NotADigitalSignatureException("Document has no signature to augment.");
+            }
+
+            PdfStamper stamper;
+            if (tsaClient != null) {
+                stamper = PdfStamper.createSignature(reader, out, '\0', tempFile, true);
+            } else {
+                if (out == null) {
+                    out = fileOut = new BufferedOutputStream(new FileOutputStream(tempFile), OUTPUT_BUFFER_SIZE);
+                }
+                stamper = new PdfStamper(reader, out, '\0', true);
+            }
+            LtvVerification verification = stamper.getLtvVerification();
+
+            // An earlier augmentation already covered the signatures up to its document timestamp
+            String last = names.get(names.size() - 1);
+            if (fields.verifySignature(last).isTsp()) {
+                addVerification(verification, last, CertificateOption.SIGNING_CERTIFICATE);
+            } else {
+                for (String name : names) {
+                    addVerification(verification, name, CertificateOption.WHOLE_CHAIN);
+                }
+            }
+
+            if (tsaClient != null) {
+                PdfSignatureAppearance appearance = stamper.getSignatureAppearance();
+                LtvTimestamp.timestamp(appearance, tsaClient, null);
+            } else {
+                stamper.close();
+            }
+        } catch (NotADigitalSignatureException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Adding LTV data failed", e), e);
+        } finally {
+            reader.close();
+            if (fileOut != null) {
+                try {
+                    fileOut.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close temporary augmented file " + tempFile + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void deleteTempFile(Path tempFile) {
+        if (tempFile == null) return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary augmented file " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    private void addVerification(LtvVerification verification, String signatureName, CertificateOption option)
+            throws IOException, GeneralSecurityException {
+        boolean added = verification.addVerification(signatureName, ocspClient, crlClient, option,
+                Level.OCSP_OPTIONAL_CRL, CertificateInclusion.YES);
+        if (!added) {
+            log.warn("No revocation data found for signature " + signatureName);
+        }
+    }
+}
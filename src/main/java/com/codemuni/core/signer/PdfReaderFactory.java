@@ -0,0 +1,65 @@
+package com.codemuni.core.signer;
+
+import com.codemuni.config.ConfigManager;
+import com.codemuni.model.PdfReadMode;
+import com.itextpdf.text.io.RandomAccessSource;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens PdfReader instances for the signing path.
+ * <p>
+ * Signing only appends an incremental update, so large documents do not need to be parsed up front:
+ * the partial modes read objects on demand from a memory-mapped or random-access source and keep
+ * only a small part of the file on the heap. This only bounds memory together with the write side:
+ * {@link Signer} has iText assemble the signed copy in a temporary file rather than in a heap buffer.
+ */
+public final class PdfReaderFactory {
+
+    private static final Log log = LogFactory.getLog(PdfReaderFactory.class);
+
+    private PdfReaderFactory() {
+    }
+
+    /**
+     * Opens the file choosing the mode automatically from its size and the configured threshold.
+     */
+    public static PdfReader open(File file, String password) throws IOException {
+        return open(file, password, PdfReadMode.AUTO);
+    }
+
+    public static PdfReader open(File file, String password, PdfReadMode mode) throws IOException {
+        return open(file, password, mode, ConfigManager.getLargeFileThresholdBytes());
+    }
+
+    public static PdfReader open(File file, String password, PdfReadMode mode, long largeFileThresholdBytes) throws IOException {
+        PdfReadMode effectiveMode = resolveMode(file, mode, largeFileThresholdBytes);
+        byte[] ownerPassword = (password == null || password.isEmpty()) ? null : password.getBytes();
+
+        if (effectiveMode == PdfReadMode.FULL) {
+            return new PdfReader(file.getAbsolutePath(), ownerPassword);
+        }
+
+        RandomAccessSource source = new RandomAccessSourceFactory()
+                .setForceRead(false)
+                .setUsePlainRandomAccess(effectiveMode == PdfReadMode.RANDOM_ACCESS)
+                .createBestSource(file.getAbsolutePath());
+
+        log.info("Opening " + file.getName() + " (" + file.length() + " bytes) in " + effectiveMode + " mode.");
+        // Partial read; the source is closed together with the reader (or on constructor failure).
+        return new PdfReader(new RandomAccessFileOrArray(source), ownerPassword, true);
+    }
+
+    static PdfReadMode resolveMode(File file, PdfReadMode mode, long largeFileThresholdBytes) {
+        if (mode == null || mode == PdfReadMode.AUTO) {
+            return file.length() > largeFileThresholdBytes ? PdfReadMode.MEMORY_MAPPED : PdfReadMode.FULL;
+        }
+        return mode;
+    }
+}
@@ -0,0 +1,36 @@
+package com.codemuni.core.signer;
+
+/**
+ * Result of {@link DeferredSigner#prepare}: the document was written with an empty signature container
+ * of {@code containerSize} bytes in field {@code fieldName}, and {@code digest} is the hash of its ByteRange.
+ * The digest is all a signing host needs to produce the CMS.
+ */
+public final class PreparedSignature {
+    private final String fieldName;
+    private final byte[] digest;
+    private final String hashAlgorithm;
+    private final int containerSize;
+
+    public PreparedSignature(String fieldName, byte[] digest, String hashAlgorithm, int containerSize) {
+        this.fieldName = fieldName;
+        this.digest = digest.clone();
+        this.hashAlgorithm = hashAlgorithm;
+        this.containerSize = containerSize;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public int getContainerSize() {
+        return containerSize;
+    }
+}
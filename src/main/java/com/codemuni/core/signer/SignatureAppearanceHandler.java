@@ -23,10 +23,22 @@ import static com.codemuni.utils.AppConstants.APP_NAME;
 public class SignatureAppearanceHandler {
 
     private final KeyStoreProvider keyStoreProvider;
+    private final X509Certificate signerCertificate;
     private final AppearanceOptions options;
 
     public SignatureAppearanceHandler(KeyStoreProvider keyStoreProvider, AppearanceOptions options) {
         this.keyStoreProvider = keyStoreProvider;
+        this.signerCertificate = null;
+        this.options = options;
+    }
+
+    /**
+     * For documents prepared without access to the key store (deferred signing): the appearance only needs
+     * the signer certificate.
+     */
+    public SignatureAppearanceHandler(X509Certificate signerCertificate, AppearanceOptions options) {
+        this.keyStoreProvider = null;
+        this.signerCertificate = signerCertificate;
         this.options = options;
     }
 
@@ -72,7 +84,9 @@ public class SignatureAppearanceHandler {
     }
 
     private void setLayer2Text(PdfSignatureAppearance appearance) throws KeyStoreException, CertificateExpiredException, NotADigitalSignatureException, DocumentException, IOException {
-        X509Certificate cert = (X509Certificate) keyStoreProvider.getCertificateChain()[0];
+        X509Certificate cert = signerCertificate != null
+                ? signerCertificate
+                : (X509Certificate) keyStoreProvider.getCertificateChain()[0];
         String layerText = buildLayerText(cert, options);
 
         appearance.setLayer2Text(layerText);
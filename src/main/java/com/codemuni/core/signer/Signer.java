@@ -2,8 +2,10 @@ package com.codemuni.core.signer;
 
 import com.codemuni.core.keyStoresProvider.KeyStoreProvider;
 import com.codemuni.exceptions.CertificateChainException;
+import com.codemuni.exceptions.NotADigitalSignatureException;
 import com.codemuni.exceptions.SigningProcessException;
 import com.codemuni.exceptions.TSAConfigurationException;
+import com.codemuni.exceptions.UserCancelledOperationException;
 import com.codemuni.exceptions.UserCancelledPasswordEntryException;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.pdf.*;
@@ -12,22 +14,33 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.SignatureException;
 import java.security.cert.Certificate;
-import java.util.ArrayList;
-import java.util.Base64;
-import java.util.List;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Signer {
 
     private static final Log log = LogFactory.getLog(Signer.class);
-    private static final int BASE_SIGNATURE_SIZE = 10000;
-    private static final int CERTIFICATE_SIZE_ESTIMATE = 15_000;
-    private static final int TIMESTAMP_SIZE_ESTIMATE = 15_000;
-    private static final int LTV_SIZE_ESTIMATE = 12_50_000;
-    private static final int CMS_OVERHEAD = 10_000;
-    private static final int SAFETY_MARGIN = 10_000;
+    // Signature container sizing: measured parts (chain, CRLs, OCSP, TSA token) plus these allowances
+    private static final int CMS_OVERHEAD = 2_048;          // signer info, signed attributes, DER headers
+    private static final int SIGNATURE_VALUE_SIZE = 512;    // RSA-4096 / ECDSA P-521 signature value
+    private static final int TSA_TOKEN_SLACK = 1_024;       // tokens from one TSA differ in serial and nonce length
+    private static final int SAFETY_MARGIN = 1_024;
+    private static final int MAX_SIGN_ATTEMPTS = 2;
 
     public static String buildDetailedMessage(String context, Exception e) {
         String baseMsg = context != null ? context : "An error occurred";
@@ -54,10 +67,136 @@ public class Signer {
         return cause;
     }
 
+    /**
+     * Signs the document and returns it Base64 encoded.
+     * Thin adapter over {@link #sign(PdfReader, KeyStoreProvider, AppearanceOptions, CustomTSAClientBouncyCastle, OutputStream)}
+     * for callers that really need the encoded form; it holds the whole signed PDF in memory.
+     */
     public String sign(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options, CustomTSAClientBouncyCastle tsaClient) throws UserCancelledPasswordEntryException {
+        ByteArrayOutputStream signedPdfOutputStream = new ByteArrayOutputStream();
+        sign(reader, keyStoreProvider, options, tsaClient, signedPdfOutputStream);
+        return Base64.getEncoder().encodeToString(signedPdfOutputStream.toByteArray());
+    }
+
+    /**
+     * Signs the document into {@code target}. Output is streamed to a temporary file next to the target
+     * and renamed over it only once signing succeeded, so a failed run never leaves a truncated PDF behind.
+     */
+    public void sign(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options, CustomTSAClientBouncyCastle tsaClient, Path target) throws UserCancelledPasswordEntryException {
+        sign(reader, keyStoreProvider, options, tsaClient, target, SigningProgressListener.NONE);
+    }
+
+    /**
+     * As {@link #sign(PdfReader, KeyStoreProvider, AppearanceOptions, CustomTSAClientBouncyCastle, Path)}, reporting
+     * each {@link SigningStage} to {@code listener}. When the listener reports cancellation, the signature is
+     * abandoned at the next stage boundary with a {@link UserCancelledOperationException}; the target is then left untouched.
+     */
+    public void sign(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options, CustomTSAClientBouncyCastle tsaClient,
+                     Path target, SigningProgressListener listener) throws UserCancelledPasswordEntryException {
+        signToFile(reader, keyStoreProvider, options, tsaClient, target, listener, 0);
+    }
+
+    /**
+     * As {@link #sign(PdfReader, KeyStoreProvider, AppearanceOptions, CustomTSAClientBouncyCastle, Path, SigningProgressListener)},
+     * opening the document from {@code readerSource}. The signature container is sized from the actual chain,
+     * revocation data and TSA token; should the finished signature still not fit, the document is reopened and
+     * signed once more with the size that was missing.
+     */
+    public void sign(Callable<PdfReader> readerSource, KeyStoreProvider keyStoreProvider, AppearanceOptions options,
+                     CustomTSAClientBouncyCastle tsaClient, Path target, SigningProgressListener listener)
+            throws UserCancelledPasswordEntryException {
+        int minimumSize = 0;
+        for (int attempt = 1; ; attempt++) {
+            PdfReader reader;
+            try {
+                reader = readerSource.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SigningProcessException(buildDetailedMessage("Opening PDF failed", e), e);
+            }
+            try {
+                signToFile(reader, keyStoreProvider, options, tsaClient, target, listener, minimumSize);
+                return;
+            } catch (SigningProcessException e) {
+                ContainerTooSmallException tooSmall = containerTooSmall(e);
+                if (tooSmall == null || attempt >= MAX_SIGN_ATTEMPTS) throw e;
+                minimumSize = tooSmall.getRequiredSize() + SAFETY_MARGIN;
+                log.warn("Signature needed " + tooSmall.getRequiredSize() + " bytes but only " + tooSmall.getReservedSize()
+                        + " were reserved; signing again with " + minimumSize + " bytes.");
+            }
+        }
+    }
+
+    private void signToFile(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options,
+                            CustomTSAClientBouncyCastle tsaClient, Path target, SigningProgressListener listener,
+                            int minimumSize) throws UserCancelledPasswordEntryException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(directory, "." + target.getFileName().toString(), ".tmp");
+            try {
+                // iText writes the signed document straight into the temporary file, which then becomes the target
+                signToStream(reader, keyStoreProvider, options, tsaClient, null, tempFile.toFile(), listener, minimumSize);
+            } finally {
+                // A partial reader keeps the source mapped or open; Windows refuses to replace it (target == source)
+                reader.close();
+            }
+            moveReplacing(tempFile, target);
+            tempFile = null;
+        } catch (IOException e) {
+            throw new SigningProcessException(buildDetailedMessage("Writing signed PDF failed", e), e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    static void deleteTempFile(Path tempFile) {
+        if (tempFile == null) return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary signed file " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Signs the document and streams the signed PDF to {@code out}. The stream is not closed.
+     */
+    public void sign(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options, CustomTSAClientBouncyCastle tsaClient, OutputStream out) throws UserCancelledPasswordEntryException {
+        sign(reader, keyStoreProvider, options, tsaClient, out, SigningProgressListener.NONE);
+    }
+
+    /**
+     * Signs the document into {@code out}, reporting each {@link SigningStage} to {@code listener}. The stream is not closed.
+     * The signed document is assembled in a temporary file and copied to {@code out} once the signature is in place.
+     */
+    public void sign(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options, CustomTSAClientBouncyCastle tsaClient,
+                     OutputStream out, SigningProgressListener listener) throws UserCancelledPasswordEntryException {
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("emark-sign", ".pdf");
+            signToStream(reader, keyStoreProvider, options, tsaClient, out, tempFile.toFile(), listener, 0);
+        } catch (IOException e) {
+            throw new SigningProcessException(buildDetailedMessage("Creating temporary file failed", e), e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * @param out         receives a copy of the signed document, or null to leave it in {@code tempFile} only
+     * @param tempFile    file iText assembles the signed document in; with a null {@code tempFile} iText would keep
+     *                    the whole document in a heap buffer, which large documents do not fit
+     * @param minimumSize bytes to reserve for the signature container at least; 0 to size it from the signature's parts only
+     */
+    private void signToStream(PdfReader reader, KeyStoreProvider keyStoreProvider, AppearanceOptions options,
+                              CustomTSAClientBouncyCastle tsaClient, OutputStream out, File tempFile,
+                              SigningProgressListener listener, int minimumSize) throws UserCancelledPasswordEntryException {
         PdfStamper stamper = null;
 
-        try (ByteArrayOutputStream signedPdfOutputStream = new ByteArrayOutputStream()) {
+        try {
+            enterStage(SigningStage.PREPARE, listener);
 
             if (options.isTimestampEnabled()) {
                 if (tsaClient == null) throw new TSAConfigurationException("TSA client is not configured.");
@@ -68,50 +207,164 @@ public class Signer {
             // Validate certificate chain
             Certificate[] certChain = keyStoreProvider.getCertificateChain();
 
-            stamper = PdfStamper.createSignature(reader, signedPdfOutputStream, '\0', null, true);
+            stamper = PdfStamper.createSignature(reader, out, '\0', tempFile, true);
             PdfSignatureAppearance appearance = stamper.getSignatureAppearance();
 
-            SignatureAppearanceHandler appearanceHandler = new SignatureAppearanceHandler(keyStoreProvider, options);
-            appearanceHandler.configureAppearance(appearance);
-
-            // Watermark
-            if (options.getWatermarkImage() != null)
-                applyWatermarkToSignatureAppearance(appearance, options);
+            applyAppearance(appearance, new SignatureAppearanceHandler(keyStoreProvider, options), options);
 
             ExternalDigest digest = new BouncyCastleDigest();
             ExternalSignature signature = new PrivateKeySignature(
                     keyStoreProvider.getPrivateKey(), DigestAlgorithms.SHA256, keyStoreProvider.getProvider());
 
             List<CrlClient> crlList = options.isLtvEnabled() ? prepareLtvComponents(certChain) : new ArrayList<>();
-            OcspClient ocspClient = options.isLtvEnabled() ? new OcspClientBouncyCastle(null) : null;
+            OcspClient ocspClient = options.isLtvEnabled() ? CachingOcspClient.getInstance() : null;
 
-            int estimatedSize = estimateSignatureSize(certChain.length, tsaClient != null && options.isTimestampEnabled(), options.isLtvEnabled());
-
-            MakeSignature.signDetached(
+            signDetached(
                     appearance, digest, signature, certChain,
-                    crlList, ocspClient, tsaClient, estimatedSize, MakeSignature.CryptoStandard.CADES
+                    crlList, ocspClient, tsaClient, minimumSize, listener
             );
 
-            return Base64.getEncoder().encodeToString(signedPdfOutputStream.toByteArray());
-
+        } catch (UserCancelledOperationException e) {
+            throw e;
         } catch (SignatureException e) {
             throw new UserCancelledPasswordEntryException("Signature cancelled by user.", e);
         } catch (KeyStoreException e) {
             throw new CertificateChainException("Unable to fetch certificate chain.", e);
         } catch (Exception e) {
+            // Cancelling before the timestamp reaches us wrapped by iText's PdfPKCS7
+            Throwable rootCause = getRootCause(e);
+            if (rootCause instanceof UserCancelledOperationException) throw (UserCancelledOperationException) rootCause;
             String detailedMessage = buildDetailedMessage("Signing PDF failed", e);
             throw new SigningProcessException(detailedMessage, e);
         } finally {
             try {
                 if (stamper != null) stamper.close();
-                if (reader != null) reader.close();
             } catch (Exception e) {
                 log.error("Failed to close resources" + e.getMessage(), e);
             }
+            if (reader != null) reader.close();
         }
     }
 
-    private void applyWatermarkToSignatureAppearance(PdfSignatureAppearance appearance, AppearanceOptions options) {
+    /**
+     * Same steps as {@link MakeSignature#signDetached} (CAdES), split into stages so progress can be reported
+     * and the signature cancelled between them. The container is sized once the revocation data is known,
+     * see {@link #estimateContainerSize}.
+     */
+    private static void signDetached(PdfSignatureAppearance sap, ExternalDigest externalDigest, ExternalSignature externalSignature,
+                                     Certificate[] chain, Collection<CrlClient> crlList, OcspClient ocspClient,
+                                     CustomTSAClientBouncyCastle tsaClient, int minimumSize, SigningProgressListener listener)
+            throws IOException, DocumentException, GeneralSecurityException {
+
+        // Revocation data does not depend on the document hash: fetched while preparing
+        Collection<byte[]> crlBytes = null;
+        for (int i = 0; crlBytes == null && i < chain.length; i++) {
+            crlBytes = MakeSignature.processCrl(chain[i], crlList);
+        }
+        byte[] ocsp = null;
+        if (chain.length >= 2 && ocspClient != null) {
+            ocsp = ocspClient.getEncoded((X509Certificate) chain[0], (X509Certificate) chain[1], null);
+        }
+        int estimatedSize = Math.max(minimumSize, estimateContainerSize(chain, crlBytes, ocsp, tsaClient));
+
+        sap.setCertificate(chain[0]);
+        PdfSignature dic = new PdfSignature(PdfName.ADOBE_PPKLITE, PdfName.ETSI_CADES_DETACHED);
+        dic.setReason(sap.getReason());
+        dic.setLocation(sap.getLocation());
+        dic.setSignatureCreator(sap.getSignatureCreator());
+        dic.setContact(sap.getContact());
+        dic.setDate(new PdfDate(sap.getSignDate()));
+        sap.setCryptoDictionary(dic);
+
+        HashMap<PdfName, Integer> exclusions = new HashMap<>();
+        exclusions.put(PdfName.CONTENTS, estimatedSize * 2 + 2);
+        sap.preClose(exclusions);
+
+        enterStage(SigningStage.HASH, listener);
+        String hashAlgorithm = externalSignature.getHashAlgorithm();
+        byte[] hash = DigestAlgorithms.digest(sap.getRangeStream(), externalDigest.getMessageDigest(hashAlgorithm));
+
+        enterStage(SigningStage.SIGN, listener);
+        AtomicBoolean timestamped = new AtomicBoolean();
+        TSAClient stagedTsaClient = tsaClient == null ? null : new TSAClient() {
+            @Override
+            public int getTokenSizeEstimate() {
+                return tsaClient.getTokenSizeEstimate();
+            }
+
+            @Override
+            public MessageDigest getMessageDigest() throws GeneralSecurityException {
+                return tsaClient.getMessageDigest();
+            }
+
+            @Override
+            public byte[] getTimeStampToken(byte[] imprint) throws Exception {
+                enterStage(SigningStage.TIMESTAMP, listener);
+                timestamped.set(true);
+                byte[] token = tsaClient.getTimeStampToken(imprint);
+                // FailoverTSAClient records the size under the URL that actually answered
+                if (token != null && !(tsaClient instanceof FailoverTSAClient)) {
+                    TsaEndpointStats.forUrl(tsaClient.getUrl()).recordTokenSize(token.length);
+                }
+                return token;
+            }
+        };
+        byte[] encodedSig = DeferredSigner.createSignatureContainer(
+                hash, chain, externalSignature, externalDigest, stagedTsaClient, ocsp, crlBytes);
+
+        // A timestamp token is not thrown away: cancelling is only honoured here if none was requested
+        enterStage(SigningStage.EMBED, listener, !timestamped.get());
+        if (estimatedSize < encodedSig.length) {
+            throw new ContainerTooSmallException(estimatedSize, encodedSig.length);
+        }
+        byte[] paddedSig = new byte[estimatedSize];
+        System.arraycopy(encodedSig, 0, paddedSig, 0, encodedSig.length);
+        PdfDictionary contents = new PdfDictionary();
+        contents.put(PdfName.CONTENTS, new PdfString(paddedSig).setHexWriting(true));
+
+        enterStage(SigningStage.WRITE, listener, false);
+        sap.close(contents);
+    }
+
+    /**
+     * Reports {@code stage}, unless the listener cancelled the signature: then it is abandoned.
+     */
+    private static void enterStage(SigningStage stage, SigningProgressListener listener) {
+        enterStage(stage, listener, true);
+    }
+
+    private static void enterStage(SigningStage stage, SigningProgressListener listener, boolean checkCancelled) {
+        if (checkCancelled && listener.isCancelled()) {
+            throw new UserCancelledOperationException("Signing cancelled before " + stage.getLabel().toLowerCase() + ".");
+        }
+        listener.onStage(stage);
+    }
+
+    static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Visible appearance, watermark and PAdES (ESIC) developer extension; shared with {@link DeferredSigner}
+     * so both APIs produce the same document.
+     */
+    static void applyAppearance(PdfSignatureAppearance appearance, SignatureAppearanceHandler appearanceHandler,
+                                AppearanceOptions options)
+            throws GeneralSecurityException, NotADigitalSignatureException, DocumentException, IOException {
+        appearanceHandler.configureAppearance(appearance);
+
+        // Watermark
+        if (options.getWatermarkImage() != null)
+            applyWatermarkToSignatureAppearance(appearance, options);
+
+        appearance.addDeveloperExtension(PdfDeveloperExtension.ESIC_1_7_EXTENSIONLEVEL2);
+    }
+
+    private static void applyWatermarkToSignatureAppearance(PdfSignatureAppearance appearance, AppearanceOptions options) {
         int[] coords = options.getCoordinates();
         float rectWidth = coords[2] - coords[0]; // urx - llx
         float rectHeight = coords[3] - coords[1]; // ury - lly
@@ -139,16 +392,73 @@ public class Signer {
         background.restoreState();
     }
 
-    private int estimateSignatureSize(int certCount, boolean withTimestamp, boolean withLTV) {
-        return BASE_SIGNATURE_SIZE + (certCount * CERTIFICATE_SIZE_ESTIMATE) +
-                (withTimestamp ? TIMESTAMP_SIZE_ESTIMATE : 0) +
-                (withLTV ? LTV_SIZE_ESTIMATE : 0) + CMS_OVERHEAD + SAFETY_MARGIN;
+    /**
+     * Bytes to reserve for the CMS: everything it embeds verbatim (chain, CRLs, OCSP response, TSA token) is
+     * measured or taken from the TSA's last token; only the signature value and the CMS structure are allowances.
+     * CRLs are counted once: CAdES carries them in the signed revocation attribute only.
+     */
+    static int estimateContainerSize(Certificate[] chain, Collection<byte[]> crlBytes, byte[] ocsp,
+                                     CustomTSAClientBouncyCastle tsaClient) throws CertificateEncodingException {
+        int size = CMS_OVERHEAD + SIGNATURE_VALUE_SIZE + SAFETY_MARGIN;
+        for (Certificate certificate : chain) size += certificate.getEncoded().length;
+        if (crlBytes != null) {
+            for (byte[] crl : crlBytes) size += crl.length;
+        }
+        if (ocsp != null) size += ocsp.length;
+        if (tsaClient != null) {
+            int lastToken = lastTokenSize(tsaClient);
+            size += lastToken > 0 ? lastToken + TSA_TOKEN_SLACK : tsaClient.getTokenSizeEstimate();
+        }
+        return size;
+    }
+
+    /**
+     * Largest last token of the URLs that may answer for {@code tsaClient} (any of a {@link FailoverTSAClient}'s),
+     * so a backup TSA with bigger tokens answering now and then does not force a re-sign; 0 if none answered yet.
+     */
+    private static int lastTokenSize(CustomTSAClientBouncyCastle tsaClient) {
+        List<String> urls = tsaClient instanceof FailoverTSAClient
+                ? ((FailoverTSAClient) tsaClient).getUrls()
+                : Collections.singletonList(tsaClient.getUrl());
+        int size = 0;
+        for (String url : urls) {
+            size = Math.max(size, TsaEndpointStats.forUrl(url).getLastTokenSize());
+        }
+        return size;
+    }
+
+    private static ContainerTooSmallException containerTooSmall(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ContainerTooSmallException) return (ContainerTooSmallException) cause;
+        }
+        return null;
     }
 
     private List<CrlClient> prepareLtvComponents(Certificate[] certChain) {
         List<CrlClient> crlList = new ArrayList<>();
-        crlList.add(new CrlClientOnline(certChain));
+        crlList.add(new CachingCrlClient(certChain));
         return crlList;
     }
 
-}
\ No newline at end of file
+    /**
+     * The finished CMS did not fit the space reserved in the document.
+     */
+    private static final class ContainerTooSmallException extends IOException {
+        private final int reservedSize;
+        private final int requiredSize;
+
+        private ContainerTooSmallException(int reservedSize, int requiredSize) {
+            super("Not enough space: signature needs " + requiredSize + " bytes, " + reservedSize + " reserved");
+            this.reservedSize = reservedSize;
+            this.requiredSize = requiredSize;
+        }
+
+        int getReservedSize() {
+            return reservedSize;
+        }
+
+        int getRequiredSize() {
+            return requiredSize;
+        }
+    }
+}
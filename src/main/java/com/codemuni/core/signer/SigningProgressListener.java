@@ -0,0 +1,22 @@
+package com.codemuni.core.signer;
+
+/**
+ * Notified by {@link Signer} when a stage starts, and asked before each stage whether the signature
+ * should be abandoned, until a timestamp has been requested. Called on the signing thread.
+ */
+@FunctionalInterface
+public interface SigningProgressListener {
+
+    SigningProgressListener NONE = stage -> {
+    };
+
+    void onStage(SigningStage stage);
+
+    /**
+     * Cancellation is cooperative: interrupting the signing thread would close the NIO channels the
+     * reader and the output rely on, so a flag is polled instead.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
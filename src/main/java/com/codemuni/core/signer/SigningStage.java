@@ -0,0 +1,31 @@
+package com.codemuni.core.signer;
+
+/**
+ * Stages of a signature, in the order {@link Signer} runs them. TIMESTAMP is skipped when no TSA is used.
+ * Cancelling during a stage that is not {@link #isCancellable() cancellable} no longer stops the signature: once
+ * the timestamp is requested it is used, and the signed PDF is written out.
+ */
+public enum SigningStage {
+    PREPARE("Preparing document", true),
+    HASH("Hashing document", true),
+    SIGN("Signing", true),
+    TIMESTAMP("Requesting timestamp", false),
+    EMBED("Embedding signature", false),
+    WRITE("Writing signed PDF", false);
+
+    private final String label;
+    private final boolean cancellable;
+
+    SigningStage(String label, boolean cancellable) {
+        this.label = label;
+        this.cancellable = cancellable;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isCancellable() {
+        return cancellable;
+    }
+}
@@ -0,0 +1,85 @@
+package com.codemuni.core.signer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide latency and failure counters per timestamp server URL, fed by {@link FailoverTSAClient}, plus the
+ * size of the last token each URL returned, which {@link Signer} reserves room for.
+ * Latencies are smoothed with an exponentially weighted moving average so a single slow response does not
+ * dominate, while a TSA that became slow shows up within a few requests.
+ */
+public final class TsaEndpointStats {
+
+    private static final double SMOOTHING = 0.2;
+    private static final Map<String, TsaEndpointStats> BY_URL = new ConcurrentHashMap<>();
+
+    private final String url;
+    private long requests;
+    private long failures;
+    private double averageMillis;
+    private long lastMillis;
+    private long maxMillis;
+    private int lastTokenSize;
+
+    private TsaEndpointStats(String url) {
+        this.url = url;
+    }
+
+    public static TsaEndpointStats forUrl(String url) {
+        return BY_URL.computeIfAbsent(url, TsaEndpointStats::new);
+    }
+
+    synchronized void recordSuccess(long millis) {
+        requests++;
+        averageMillis = requests == 1 ? millis : averageMillis + SMOOTHING * (millis - averageMillis);
+        lastMillis = millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    synchronized void recordTokenSize(int size) {
+        lastTokenSize = size;
+    }
+
+    synchronized void recordFailure() {
+        requests++;
+        failures++;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getAverageMillis() {
+        return Math.round(averageMillis);
+    }
+
+    public synchronized long getLastMillis() {
+        return lastMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Encoded size of the last time-stamp token received from this URL, 0 if none yet.
+     */
+    public synchronized int getLastTokenSize() {
+        return lastTokenSize;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return url + ": " + requests + " requests, " + failures + " failed, avg " + Math.round(averageMillis)
+                + " ms, last " + lastMillis + " ms, max " + maxMillis + " ms";
+    }
+}
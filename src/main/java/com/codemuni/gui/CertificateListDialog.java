@@ -15,7 +15,12 @@ import java.io.File;
 import java.security.cert.X509Certificate;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.codemuni.utils.AppConstants.APP_NAME;
 
@@ -29,6 +34,16 @@ public class CertificateListDialog extends JDialog {
 
     private final List<KeystoreAndCertificateInfo> certificateList;
     private final List<JPanel> cardList = new ArrayList<>();
+    // Latest certificates reported by each source; a newer report replaces the source's previous one
+    private final Map<String, List<KeystoreAndCertificateInfo>> certificatesBySource = new LinkedHashMap<>();
+    // Cards are kept across reports so an unchanged certificate keeps its card (and selection)
+    private final Map<KeystoreAndCertificateInfo, JPanel> cardsByCertificate = new HashMap<>();
+    private final List<String> failedSources = new ArrayList<>();
+    private boolean searching;
+
+    private JPanel listPanel;
+    private JLabel emptyLabel;
+    private JLabel statusLabel;
 
     private JButton browseButton;
     private File selectedPfxFile = null;
@@ -80,7 +95,7 @@ public class CertificateListDialog extends JDialog {
             }
         });
 
-        add(createHeaderLabel(), BorderLayout.NORTH);
+        add(createHeaderPanel(), BorderLayout.NORTH);
         add(createCertificateScrollPane(), BorderLayout.CENTER);
         add(createFooterPanel(), BorderLayout.SOUTH);
 
@@ -88,34 +103,34 @@ public class CertificateListDialog extends JDialog {
                 KeyStroke.getKeyStroke("ESCAPE"), JComponent.WHEN_IN_FOCUSED_WINDOW);
     }
 
-    private JLabel createHeaderLabel() {
+    private JPanel createHeaderPanel() {
         JLabel label = new JLabel("Select a Certificate for Signing");
         label.setFont(new Font("Segoe UI", Font.BOLD, 18));
         label.setForeground(COLOR_TEXT_PRIMARY);
-        label.setBorder(new EmptyBorder(20, 25, 10, 25));
-        return label;
+
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        statusLabel.setForeground(COLOR_TEXT_SECONDARY);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 4));
+        panel.setOpaque(false);
+        panel.setBorder(new EmptyBorder(20, 25, 10, 25));
+        panel.add(label, BorderLayout.NORTH);
+        panel.add(statusLabel, BorderLayout.SOUTH);
+        return panel;
     }
 
     private JScrollPane createCertificateScrollPane() {
-        JPanel listPanel = new JPanel();
+        listPanel = new JPanel();
         listPanel.setLayout(new BoxLayout(listPanel, BoxLayout.Y_AXIS));
         listPanel.setBackground(COLOR_BACKGROUND);
         listPanel.setBorder(new EmptyBorder(10, 15, 10, 15));
 
-        if (certificateList.isEmpty()) {
-            JLabel empty = new JLabel("No certificates available.");
-            empty.setFont(new Font("Segoe UI", Font.ITALIC, 14));
-            empty.setForeground(COLOR_TEXT_SECONDARY);
-            empty.setAlignmentX(Component.CENTER_ALIGNMENT);
-            listPanel.add(empty);
-        } else {
-            for (KeystoreAndCertificateInfo info : certificateList) {
-                JPanel card = createCertificateCard(info);
-                cardList.add(card);
-                listPanel.add(card);
-                listPanel.add(Box.createVerticalStrut(8));
-            }
-        }
+        emptyLabel = new JLabel("No certificates available.");
+        emptyLabel.setFont(new Font("Segoe UI", Font.ITALIC, 14));
+        emptyLabel.setForeground(COLOR_TEXT_SECONDARY);
+        emptyLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        rebuildCards();
 
         certificateScrollPane = new JScrollPane(listPanel);
         certificateScrollPane.setBorder(BorderFactory.createEmptyBorder());
@@ -126,6 +141,65 @@ public class CertificateListDialog extends JDialog {
         return certificateScrollPane;
     }
 
+    /**
+     * Sets the certificates of one source, replacing what it reported before (e.g. cached certificates
+     * reconciled with a fresh scan): new certificates are added, vanished ones removed. Must be called on the EDT.
+     */
+    public void setCertificates(String source, List<KeystoreAndCertificateInfo> certificates) {
+        certificatesBySource.put(source, new ArrayList<>(certificates));
+        rebuildCards();
+    }
+
+    /**
+     * Shows that (more) certificate sources are still being probed. Must be called on the EDT.
+     */
+    public void setSearching(boolean searching) {
+        this.searching = searching;
+        updateStatus();
+    }
+
+    /**
+     * Records a source that failed or timed out; listed once the search is finished. Must be called on the EDT.
+     */
+    public void addFailedSource(String source) {
+        failedSources.add(source);
+        updateStatus();
+    }
+
+    private void rebuildCards() {
+        // Sources may report the same certificate more than once
+        Set<KeystoreAndCertificateInfo> shown = new LinkedHashSet<>(certificateList);
+        certificatesBySource.values().forEach(shown::addAll);
+        cardsByCertificate.keySet().retainAll(shown);
+        if (selectedCard != null && !cardsByCertificate.containsValue(selectedCard)) {
+            selectedCard = null;
+        }
+
+        cardList.clear();
+        listPanel.removeAll();
+        listPanel.add(emptyLabel);
+        for (KeystoreAndCertificateInfo info : shown) {
+            JPanel card = cardsByCertificate.computeIfAbsent(info, this::createCertificateCard);
+            cardList.add(card);
+            listPanel.add(card);
+            listPanel.add(Box.createVerticalStrut(8));
+        }
+        emptyLabel.setVisible(cardList.isEmpty() && !searching);
+        listPanel.revalidate();
+        listPanel.repaint();
+    }
+
+    private void updateStatus() {
+        if (searching) {
+            statusLabel.setText("Searching for certificates...");
+        } else if (!failedSources.isEmpty()) {
+            statusLabel.setText("Not reachable: " + String.join(", ", failedSources));
+        } else {
+            statusLabel.setText(" ");
+        }
+        emptyLabel.setVisible(cardList.isEmpty() && !searching);
+    }
+
     private JPanel createFooterPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(10, 15, 10, 15));
@@ -0,0 +1,81 @@
+package com.codemuni.gui;
+
+import com.codemuni.core.signer.SigningProgressListener;
+import com.codemuni.core.signer.SigningStage;
+import com.formdev.flatlaf.util.UIScale;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+/**
+ * Modal progress window shown while a document is signed on a worker thread; it is the worker's
+ * {@link SigningProgressListener}. The EDT keeps running (repaints, dialog events) while it is open.
+ * Cancel or closing the window flags the signature as cancelled until its last cancellable stage;
+ * the owner disposes the dialog when the worker has finished.
+ */
+public class SigningProgressDialog extends JDialog implements SigningProgressListener {
+    private final JLabel stageLabel = new JLabel("Starting...");
+    private final JProgressBar progressBar = new JProgressBar(0, SigningStage.values().length);
+    private final JButton cancelButton = new JButton("Cancel");
+    private volatile boolean cancelled;
+
+    public SigningProgressDialog(Window parent) {
+        super(parent, "Signing", ModalityType.APPLICATION_MODAL);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        setResizable(false);
+
+        JPanel content = new JPanel(new BorderLayout(0, UIScale.scale(10)));
+        content.setBorder(BorderFactory.createEmptyBorder(
+                UIScale.scale(12), UIScale.scale(12), UIScale.scale(12), UIScale.scale(12)));
+        content.add(stageLabel, BorderLayout.NORTH);
+        content.add(progressBar, BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.add(cancelButton);
+        content.add(buttons, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        cancelButton.addActionListener(e -> cancel());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancel();
+            }
+        });
+
+        pack();
+        setMinimumSize(new Dimension(UIScale.scale(320), getPreferredSize().height));
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Shows the stage that just started; may be called from any thread.
+     */
+    @Override
+    public void onStage(SigningStage stage) {
+        SwingUtilities.invokeLater(() -> {
+            if (!stage.isCancellable()) {
+                // The signature is finished whether or not Cancel was pressed
+                cancelButton.setEnabled(false);
+            } else if (cancelled) {
+                return; // keep showing "Cancelling..."
+            }
+            stageLabel.setText(stage.getLabel() + "...");
+            progressBar.setValue(stage.ordinal());
+        });
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void cancel() {
+        if (!cancelButton.isEnabled()) return; // already cancelled, or past the last cancellable stage
+        cancelled = true;
+        cancelButton.setEnabled(false);
+        stageLabel.setText("Cancelling...");
+    }
+}
@@ -0,0 +1,185 @@
+package com.codemuni.gui.pdfHandler;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of rendered page bitmaps keyed by (file, page, DPI), or by (file, page, DPI, tile)
+ * for pages that are too large to rasterize as a single bitmap.
+ * <p>
+ * Strongly held bitmaps never exceed the byte budget; the least recently used ones are demoted to soft
+ * references, so they can still be reused while the heap allows it and are reclaimed by the GC otherwise.
+ */
+public class PageImageCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<PageKey, BufferedImage> strongEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<PageKey, SoftReference<BufferedImage>> softEntries = new HashMap<>();
+    private long currentBytes;
+
+    public PageImageCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    public static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    public synchronized BufferedImage get(PageKey key) {
+        BufferedImage image = strongEntries.get(key);
+        if (image != null) return image;
+
+        SoftReference<BufferedImage> ref = softEntries.remove(key);
+        image = ref != null ? ref.get() : null;
+        if (image != null) {
+            put(key, image); // promote back to the LRU
+        }
+        return image;
+    }
+
+    public synchronized boolean contains(PageKey key) {
+        if (strongEntries.containsKey(key)) return true;
+        SoftReference<BufferedImage> ref = softEntries.get(key);
+        return ref != null && ref.get() != null;
+    }
+
+    public synchronized void put(PageKey key, BufferedImage image) {
+        Objects.requireNonNull(image, "image must not be null");
+        softEntries.remove(key);
+        BufferedImage previous = strongEntries.put(key, image);
+        if (previous != null) currentBytes -= sizeOf(previous);
+        currentBytes += sizeOf(image);
+        trimToBudget();
+    }
+
+    public synchronized void remove(PageKey key) {
+        BufferedImage previous = strongEntries.remove(key);
+        if (previous != null) currentBytes -= sizeOf(previous);
+        softEntries.remove(key);
+    }
+
+    public synchronized void clear() {
+        strongEntries.clear();
+        softEntries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private void trimToBudget() {
+        Iterator<Map.Entry<PageKey, BufferedImage>> it = strongEntries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<PageKey, BufferedImage> eldest = it.next();
+            it.remove();
+            currentBytes -= sizeOf(eldest.getValue());
+            softEntries.put(eldest.getKey(), new SoftReference<>(eldest.getValue()));
+        }
+        softEntries.values().removeIf(ref -> ref.get() == null);
+    }
+
+    /**
+     * Identifies one rendered page, or one tile of it (column/row of {@link TileRenderer#TILE_SIZE} pixels).
+     * File length and modification time are part of the key
+     * so a document re-written in place (e.g. after signing) is never served from stale bitmaps.
+     */
+    public static final class PageKey {
+        private static final int WHOLE_PAGE = -1;
+
+        private final String path;
+        private final long length;
+        private final long lastModified;
+        private final int pageIndex;
+        private final int dpi;
+        private final int tileColumn;
+        private final int tileRow;
+
+        public PageKey(File file, int pageIndex, int dpi) {
+            this.path = file.getAbsolutePath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.pageIndex = pageIndex;
+            this.dpi = dpi;
+            this.tileColumn = WHOLE_PAGE;
+            this.tileRow = WHOLE_PAGE;
+        }
+
+        private PageKey(PageKey base, int pageIndex, int dpi, int tileColumn, int tileRow) {
+            this.path = base.path;
+            this.length = base.length;
+            this.lastModified = base.lastModified;
+            this.pageIndex = pageIndex;
+            this.dpi = dpi;
+            this.tileColumn = tileColumn;
+            this.tileRow = tileRow;
+        }
+
+        /**
+         * Same document, different page and/or DPI (whole page).
+         */
+        public PageKey withPage(int pageIndex, int dpi) {
+            return new PageKey(this, pageIndex, dpi, WHOLE_PAGE, WHOLE_PAGE);
+        }
+
+        /**
+         * One tile of this page at this DPI.
+         */
+        public PageKey withTile(int tileColumn, int tileRow) {
+            return new PageKey(this, pageIndex, dpi, tileColumn, tileRow);
+        }
+
+        public int getPageIndex() {
+            return pageIndex;
+        }
+
+        public int getDpi() {
+            return dpi;
+        }
+
+        public boolean isTile() {
+            return tileColumn != WHOLE_PAGE;
+        }
+
+        public int getTileColumn() {
+            return tileColumn;
+        }
+
+        public int getTileRow() {
+            return tileRow;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PageKey)) return false;
+            PageKey that = (PageKey) o;
+            return length == that.length && lastModified == that.lastModified
+                    && pageIndex == that.pageIndex && dpi == that.dpi
+                    && tileColumn == that.tileColumn && tileRow == that.tileRow && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, length, lastModified, pageIndex, dpi, tileColumn, tileRow);
+        }
+
+        @Override
+        public String toString() {
+            return "PageKey{" + path + ", page=" + pageIndex + ", dpi=" + dpi
+                    + (isTile() ? ", tile=" + tileColumn + "," + tileRow : "") + '}';
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.codemuni.gui.pdfHandler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-core page rasterizer.
+ * <p>
+ * PDFBox's PDFRenderer (and the PDDocument behind it) is not thread-safe, so renders go through a fixed
+ * set of handles on the same file, at most one per pool thread. A task borrows an idle handle (opening a
+ * new one while fewer than {@code threads} exist), renders through it alone and returns it. Handles are not
+ * bound to worker threads, so retired fork-join workers do not leave documents behind; all handles are
+ * closed together when the renderer is closed.
+ */
+public class ParallelPageRenderer implements AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(ParallelPageRenderer.class);
+    // Below this many pages a range is rendered directly instead of being split further
+    private static final int SPLIT_THRESHOLD = 2;
+
+    private final File file;
+    private final String password;
+    private final ForkJoinPool pool;
+    private final int handleLimit;
+    private final AtomicInteger handleCount = new AtomicInteger();
+    private final BlockingQueue<WorkerHandle> idleHandles = new LinkedBlockingQueue<>();
+    private final List<WorkerHandle> openHandles = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public ParallelPageRenderer(File file, String password, int threads) {
+        this.file = file;
+        this.password = password;
+        this.handleLimit = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(Math.max(1, threads), p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("pdf-parallel-renderer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Renders one page on any free worker and hands it to {@code consumer} on that worker.
+     * Failures are logged and reported to {@link PageConsumer#onFailure}; a cancelled future never reaches the consumer.
+     */
+    public Future<?> submit(int pageIndex, float dpi, PageConsumer consumer) {
+        return submit(pageIndex, consumer, renderer -> renderer.renderImageWithDPI(pageIndex, dpi));
+    }
+
+    /**
+     * Like {@link #submit(int, float, PageConsumer)} for one region (tile) of the page, see {@link TileRenderer}.
+     */
+    public Future<?> submitRegion(int pageIndex, float dpi, Rectangle region, PageConsumer consumer) {
+        return submit(pageIndex, consumer, renderer -> TileRenderer.renderRegion(renderer, pageIndex, dpi, region));
+    }
+
+    private Future<?> submit(int pageIndex, PageConsumer consumer, RenderCall call) {
+        return pool.submit(() -> {
+            try {
+                consumer.accept(pageIndex, onWorker(call));
+            } catch (CancellationException ignored) {
+            } catch (Exception e) {
+                log.error("Failed to render page " + (pageIndex + 1), e);
+                consumer.onFailure(pageIndex, e);
+            }
+        });
+    }
+
+    /**
+     * Renders the pages {@code [from, to)} by recursively splitting the range across the pool
+     * and hands every finished page to {@code consumer} (called from worker threads). Blocks until done.
+     */
+    public void renderRange(int from, int to, float dpi, PageConsumer consumer) {
+        pool.invoke(new RangeTask(from, to, dpi, consumer));
+    }
+
+    private BufferedImage renderOnWorker(int pageIndex, float dpi) throws IOException {
+        return onWorker(renderer -> renderer.renderImageWithDPI(pageIndex, dpi));
+    }
+
+    private BufferedImage onWorker(RenderCall call) throws IOException {
+        if (closed) throw new CancellationException("Renderer closed");
+        WorkerHandle handle = borrowHandle();
+        boolean failed = true;
+        try {
+            BufferedImage image = call.render(handle.renderer);
+            failed = false;
+            return image;
+        } finally {
+            idleHandles.add(failed ? renew(handle) : handle);
+        }
+    }
+
+    /**
+     * A fresh handle in place of one whose render failed: PDFBox can leave the document's page tree unusable
+     * after a failed lookup, which would fail every later render through it. Keeps the old handle if the file
+     * cannot be reopened.
+     */
+    private WorkerHandle renew(WorkerHandle handle) {
+        if (closed) return handle;
+        WorkerHandle fresh;
+        try {
+            fresh = new WorkerHandle(file, password);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to reopen worker document handle: " + e.getMessage());
+            return handle;
+        }
+        openHandles.add(fresh);
+        openHandles.remove(handle);
+        handle.close();
+        if (closed) {
+            // close() may already have passed over openHandles
+            fresh.close();
+        }
+        return fresh;
+    }
+
+    /**
+     * An idle handle, a newly opened one while fewer than {@link #handleLimit} exist, or else the next one returned.
+     */
+    private WorkerHandle borrowHandle() throws IOException {
+        WorkerHandle handle = idleHandles.poll();
+        if (handle != null) return handle;
+
+        int count;
+        while ((count = handleCount.get()) < handleLimit) {
+            if (handleCount.compareAndSet(count, count + 1)) {
+                try {
+                    handle = new WorkerHandle(file, password);
+                } catch (IOException | RuntimeException e) {
+                    handleCount.decrementAndGet();
+                    throw e;
+                }
+                openHandles.add(handle);
+                if (closed) {
+                    // close() may already have passed over openHandles
+                    handle.close();
+                    throw new CancellationException("Renderer closed");
+                }
+                return handle;
+            }
+        }
+
+        try {
+            return idleHandles.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Renderer closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Parallel renderer workers did not stop in time; closing document handles anyway.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (WorkerHandle handle : openHandles) {
+            handle.close();
+        }
+        openHandles.clear();
+        idleHandles.clear();
+    }
+
+    public interface PageConsumer {
+        void accept(int pageIndex, BufferedImage image);
+
+        /**
+         * Called on the worker instead of {@link #accept} when a {@link #submit submitted} render fails.
+         */
+        default void onFailure(int pageIndex, Exception e) {
+        }
+    }
+
+    private interface RenderCall {
+        BufferedImage render(PDFRenderer renderer) throws IOException;
+    }
+
+    private static final class WorkerHandle {
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+
+        private WorkerHandle(File file, String password) throws IOException {
+            this.document = (password == null) ? PDDocument.load(file) : PDDocument.load(file, password);
+            if (document.isEncrypted()) {
+                document.setAllSecurityToBeRemoved(true);
+            }
+            this.renderer = new PDFRenderer(document);
+        }
+
+        private void close() {
+            try {
+                document.close();
+            } catch (IOException e) {
+                log.warn("Failed to close worker document handle: " + e.getMessage());
+            }
+        }
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final float dpi;
+        private final PageConsumer consumer;
+
+        private RangeTask(int from, int to, float dpi, PageConsumer consumer) {
+            this.from = from;
+            this.to = to;
+            this.dpi = dpi;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        consumer.accept(i, renderOnWorker(i, dpi));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to render page " + (i + 1), e);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, dpi, consumer), new RangeTask(mid, to, dpi, consumer));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.codemuni.gui.pdfHandler;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed-size icon for one page slot.
+ * The slot always reports the final page size (so layout, scrolling and signature coordinates are stable),
+ * and paints the bitmap from the {@link PageImageCache}. While the bitmap at the slot's resolution is missing,
+ * the first available fallback (a low-DPI preview, or the page at the previous zoom level) is painted scaled
+ * to the slot, or a light placeholder if there is none.
+ * A cache miss while painting asks the renderer to (re-)render the page.
+ */
+public class PdfPageIcon implements Icon {
+    private static final Color PLACEHOLDER_FILL = new Color(245, 245, 245);
+    private static final Color PLACEHOLDER_BORDER = new Color(200, 200, 200);
+
+    private final int width;
+    private final int height;
+    private final PageImageCache cache;
+    private final PageImageCache.PageKey key;
+    private final List<PageImageCache.PageKey> fallbacks;
+    private final Runnable onMissing;
+
+    public PdfPageIcon(int width, int height, PageImageCache cache, PageImageCache.PageKey key, Runnable onMissing) {
+        this(width, height, cache, key, Collections.emptyList(), onMissing);
+    }
+
+    public PdfPageIcon(int width, int height, PageImageCache cache, PageImageCache.PageKey key,
+                       List<PageImageCache.PageKey> fallbacks, Runnable onMissing) {
+        this.width = width;
+        this.height = height;
+        this.cache = cache;
+        this.key = key;
+        this.fallbacks = fallbacks;
+        this.onMissing = onMissing;
+    }
+
+    public int getPageIndex() {
+        return key.getPageIndex();
+    }
+
+    public PageImageCache.PageKey getKey() {
+        return key;
+    }
+
+    public boolean hasImage() {
+        return cache.contains(key);
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        BufferedImage current = cache.get(key);
+        if (current != null) {
+            g.drawImage(current, x, y, width, height, null);
+            return;
+        }
+
+        BufferedImage fallback = null;
+        for (PageImageCache.PageKey fallbackKey : fallbacks) {
+            fallback = cache.get(fallbackKey);
+            if (fallback != null) break;
+        }
+        if (fallback != null) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(fallback, x, y, width, height, null);
+            g2.dispose();
+        } else {
+            g.setColor(PLACEHOLDER_FILL);
+            g.fillRect(x, y, width, height);
+            g.setColor(PLACEHOLDER_BORDER);
+            g.drawRect(x, y, width - 1, height - 1);
+        }
+        if (onMissing != null) onMissing.run();
+    }
+
+    @Override
+    public int getIconWidth() {
+        return width;
+    }
+
+    @Override
+    public int getIconHeight() {
+        return height;
+    }
+}
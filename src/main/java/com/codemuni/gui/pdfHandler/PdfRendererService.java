@@ -1,35 +1,84 @@
 package com.codemuni.gui.pdfHandler;
 
+import com.codemuni.config.ConfigManager;
 import com.codemuni.exceptions.UserCancelledPasswordEntryException;
 import com.codemuni.gui.DialogUtils;
 import com.codemuni.gui.PasswordDialog;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.PDFRenderer;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Responsibilities:
- * - Load & close PDDocument
+ * - Load & close PDDocument on a dedicated renderer thread (never on the EDT)
  * - Handle password attempts via PasswordDialog
- * - Render each page as an ImageIcon + JLabel
+ * - Lay out one fixed-size slot (JLabel + PdfPageIcon) per page
+ * - Render only the pages near the viewport into a bounded PageImageCache, either on the renderer
+ *   thread or, in parallel mode, on a ParallelPageRenderer with one document handle per worker
+ * - Render progressively: a cheap PREVIEW_DPI pass for every page in range first, then the page at the
+ *   current zoom level's DPI; zooming only re-renders the pages near the viewport
+ * - Render very large pages (A0 drawings, high zoom) as TileRenderer tiles of the visible region only
+ * - Cancel queued/in-flight work when another file is opened or the user scrolls away
  * - Register rectangle drawing via SignModeController
  */
 public class PdfRendererService {
     // Rendering constants (kept same as original)
     public static final int RENDER_DPI = 100;
+    // Fast first pass, painted scaled to the slot until the full-resolution bitmap is ready
+    public static final int PREVIEW_DPI = 36;
+    public static final float MIN_ZOOM = 0.5f;
+    public static final float MAX_ZOOM = 4f;
     public static final int DEFAULT_RENDERER_PADDING = 10;
+    // Pages rendered right after opening, before the viewport has been laid out
+    private static final int INITIAL_PAGES = 2;
+    // Queued renders further than this many pages away from the prefetch window are cancelled
+    private static final int PENDING_DISTANCE = 2;
     private static final Log log = LogFactory.getLog(PdfRendererService.class);
     private final PdfViewerMain owner;
     private final JPanel pdfPanel;
 
+    // PDFBox is not thread-safe: loading, every page render and the document close run on this single thread
+    private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pdf-page-renderer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<PageImageCache.PageKey, Future<?>> pendingRenders = new ConcurrentHashMap<>();
+    private final PageImageCache pageCache = new PageImageCache(ConfigManager.getPageCacheBytes());
+    // Bumped whenever a document is opened or closed; work tagged with an older value is discarded
+    private final AtomicInteger generation = new AtomicInteger();
+    // More than one thread enables the parallel mode (one PDDocument handle per worker)
+    private final int renderThreads = ConfigManager.getRenderThreads();
+
+    // Confined to the renderer thread
     private PDDocument document;
+    private PDFRenderer renderer;
+    private String documentPassword;
+
+    // Confined to the EDT
+    private PdfPageIcon[] pageIcons;
+    private JLabel[] pageLabels;
+    private PDRectangle[] pageSizes; // displayed size in points (rotation applied)
+    private int pageCount;
+    private float zoom = 1f;
     private File currentFile;
+    private Future<?> loadTask;
+    private ParallelPageRenderer parallelRenderer;
 
     public PdfRendererService(PdfViewerMain owner) {
         this.owner = owner;
@@ -43,63 +92,307 @@ public class PdfRendererService {
     }
 
     public int getPageCountSafe() {
-        try {
-            return (document == null) ? 0 : document.getNumberOfPages();
-        } catch (Exception e) {
-            return 0;
-        }
+        return (pageIcons == null) ? 0 : pageCount;
+    }
+
+    public float getZoom() {
+        return zoom;
     }
 
-    public boolean render(File file) {
+    /**
+     * DPI the page slots are laid out (and fully rendered) at for the current zoom level.
+     */
+    public int getRenderDpi() {
+        return Math.round(RENDER_DPI * zoom);
+    }
+
+    /**
+     * Pixels per PDF point of the page slots; used to map a drawn rectangle back to PDF coordinates.
+     */
+    public float getRenderScale() {
+        return getRenderDpi() / 72f;
+    }
+
+    /**
+     * Opens {@code file} in the background. Must be called on the EDT; {@code onDone} is invoked on the EDT
+     * with true once the page slots are laid out (pages then fill in incrementally), or false on failure/cancel.
+     * Opening another file before this one finished cancels it.
+     */
+    public void render(File file, Consumer<Boolean> onDone) {
+        close(); // close if already open, cancels a load still in progress
+        final int gen = generation.get();
+
+        loadTask = renderExecutor.submit(() -> {
+            try {
+                PDDocument doc = tryLoadDocument(file);
+                if (doc.isEncrypted()) {
+                    doc.setAllSecurityToBeRemoved(true);
+                }
+
+                int count = doc.getNumberOfPages();
+                PDRectangle[] sizes = new PDRectangle[count];
+                for (int i = 0; i < count; i++) {
+                    sizes[i] = displayedPageSize(doc.getPage(i));
+                }
+
+                if (gen != generation.get()) {
+                    doc.close(); // superseded while loading
+                    return;
+                }
+                document = doc;
+                renderer = new PDFRenderer(doc);
+                String password = documentPassword;
+                SwingUtilities.invokeLater(() -> publishDocument(gen, file, password, sizes, onDone));
+
+            } catch (UserCancelledPasswordEntryException ex) {
+                log.info("User cancelled password entry.");
+                finishLoad(gen, onDone, false);
+            } catch (Exception ex) {
+                log.error("Error rendering PDF", ex);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation.get()) return;
+                    DialogUtils.showExceptionDialog(owner, "Unable to Display PDF Preview, Please try again.", ex);
+                    onDone.accept(false);
+                });
+            }
+        });
+    }
+
+    private void finishLoad(int gen, Consumer<Boolean> onDone, boolean ok) {
+        SwingUtilities.invokeLater(() -> {
+            if (gen == generation.get()) onDone.accept(ok);
+        });
+    }
+
+    private void publishDocument(int gen, File file, String password, PDRectangle[] sizes, Consumer<Boolean> onDone) {
+        if (gen != generation.get()) return;
+
         pdfPanel.removeAll();
-        try {
-            close(); // close if already open
-            document = tryLoadDocument(file);
-            if (document == null) return false;
+        currentFile = file;
+        if (renderThreads > 1 && sizes.length > 1) {
+            parallelRenderer = new ParallelPageRenderer(file, password, Math.min(renderThreads, sizes.length));
+        }
+        pageCount = sizes.length;
+        pageSizes = sizes;
+        pageIcons = new PdfPageIcon[pageCount];
+        pageLabels = new JLabel[pageCount];
+
+        // Only slots are created here; bitmaps are rendered lazily for the pages near the viewport.
+        int dpi = getRenderDpi();
+        PageImageCache.PageKey documentKey = new PageImageCache.PageKey(file, 0, dpi);
+        for (int i = 0; i < pageCount; i++) {
+            PageImageCache.PageKey key = documentKey.withPage(i, dpi);
+            pageIcons[i] = createPageIcon(key, Arrays.asList(key.withPage(i, PREVIEW_DPI)));
+
+            JPanel pageWrapper = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+            pageWrapper.setOpaque(false);
+
+            JLabel pageLabel = new JLabel(pageIcons[i]);
+            pageLabels[i] = pageLabel;
+            pageLabel.setBorder(BorderFactory.createEmptyBorder(
+                    DEFAULT_RENDERER_PADDING,
+                    DEFAULT_RENDERER_PADDING,
+                    DEFAULT_RENDERER_PADDING,
+                    DEFAULT_RENDERER_PADDING
+            ));
+
+            // Drawing is attached by SignModeController when sign mode is enabled.
+            // But we expose a helper so the controller can attach listeners anytime.
+            pageWrapper.add(pageLabel);
+            pdfPanel.add(pageWrapper);
+        }
+
+        // First pages are requested immediately so time-to-first-page does not depend on document length.
+        requestPages(0, Math.min(INITIAL_PAGES, pageCount) - 1);
+
+        pdfPanel.revalidate();
+        pdfPanel.repaint();
+        onDone.accept(true);
+    }
+
+    /**
+     * Called with the visible rectangle (in pdfPanel coordinates) whenever the viewport moves or resizes.
+     * Renders pages intersecting the viewport plus a prefetch margin that are not in the page cache.
+     */
+    public void onViewportChanged(Rectangle visibleRect) {
+        if (pageIcons == null || pdfPanel.getComponentCount() != pageCount) return;
+
+        Rectangle prefetchRect = new Rectangle(visibleRect.x, visibleRect.y - visibleRect.height,
+                visibleRect.width, visibleRect.height * 3);
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < pageCount; i++) {
+            if (pdfPanel.getComponent(i).getBounds().intersects(prefetchRect)) {
+                if (first < 0) first = i;
+                last = i;
+            }
+        }
+        if (first < 0) return;
+
+        requestPages(first, last);
+        // Bitmaps stay in the bounded page cache; only queued renders the user scrolled away from are cancelled.
+        for (PageImageCache.PageKey key : pendingRenders.keySet()) {
+            int pageIndex = key.getPageIndex();
+            if (pageIndex < first - PENDING_DISTANCE || pageIndex > last + PENDING_DISTANCE) {
+                cancelPending(key);
+            }
+        }
+    }
+
+    /**
+     * Changes the zoom level (clamped to MIN_ZOOM..MAX_ZOOM). Slots are resized at once and keep painting
+     * the previous bitmap scaled; the viewport change that follows re-renders only the pages near it.
+     */
+    public void setZoom(float newZoom) {
+        float clamped = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+        if (clamped == zoom) return;
+        zoom = clamped;
+        if (pageIcons == null) return;
 
-            if (document.isEncrypted()) {
-                document.setAllSecurityToBeRemoved(true);
+        int dpi = getRenderDpi();
+        // Renders queued for the previous zoom level are no longer useful; previews do not depend on zoom.
+        for (PageImageCache.PageKey key : pendingRenders.keySet()) {
+            if (key.getDpi() != dpi && key.getDpi() != PREVIEW_DPI) {
+                cancelPending(key);
             }
+        }
+        for (int i = 0; i < pageCount; i++) {
+            PageImageCache.PageKey previous = pageIcons[i].getKey();
+            PageImageCache.PageKey key = previous.withPage(i, dpi);
+            pageIcons[i] = createPageIcon(key, Arrays.asList(previous, key.withPage(i, PREVIEW_DPI)));
+            pageLabels[i].setIcon(pageIcons[i]);
+        }
+        pdfPanel.revalidate();
+        pdfPanel.repaint();
+    }
 
-            currentFile = file;
-            PDFRenderer renderer = new PDFRenderer(document);
+    private PdfPageIcon createPageIcon(PageImageCache.PageKey key, List<PageImageCache.PageKey> fallbacks) {
+        int pageIndex = key.getPageIndex();
+        Dimension size = pageSizeInPixels(pageSizes[pageIndex], key.getDpi() / 72f);
+        if (TileRenderer.needsTiling(size)) {
+            // Tiles are requested by the icon while painting, so only the visible ones are ever rendered.
+            return new TiledPageIcon(size.width, size.height, pageCache, key, fallbacks, this::requestTile);
+        }
+        return new PdfPageIcon(size.width, size.height, pageCache, key, fallbacks, () -> requestPage(pageIndex));
+    }
 
-            float scale = RENDER_DPI / 72f;
-            for (int i = 0; i < document.getNumberOfPages(); i++) {
-                BufferedImage image = renderer.renderImageWithDPI(i, RENDER_DPI);
+    /**
+     * Queues the previews of every page in [first, last] ahead of their full-resolution renders,
+     * so all of them show something quickly.
+     */
+    private void requestPages(int first, int last) {
+        if (pageIcons == null) return;
+        for (int i = first; i <= last; i++) {
+            requestPreview(i);
+        }
+        for (int i = first; i <= last; i++) {
+            requestFullPage(i);
+        }
+    }
 
-                JPanel pageWrapper = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
-                pageWrapper.setOpaque(false);
+    private void requestPage(int pageIndex) {
+        if (pageIcons == null) return;
+        requestPreview(pageIndex);
+        requestFullPage(pageIndex);
+    }
 
-                JLabel pageLabel = new JLabel(new ImageIcon(image));
-                pageLabel.setBorder(BorderFactory.createEmptyBorder(
-                        DEFAULT_RENDERER_PADDING,
-                        DEFAULT_RENDERER_PADDING,
-                        DEFAULT_RENDERER_PADDING,
-                        DEFAULT_RENDERER_PADDING
-                ));
+    private void requestFullPage(int pageIndex) {
+        PdfPageIcon icon = pageIcons[pageIndex];
+        if (!(icon instanceof TiledPageIcon)) {
+            requestRender(icon.getKey());
+        }
+    }
+
+    private void requestTile(PageImageCache.PageKey tileKey) {
+        if (pageIcons == null) return;
+        requestPreview(tileKey.getPageIndex());
+        requestRender(tileKey);
+    }
+
+    private void requestPreview(int pageIndex) {
+        PageImageCache.PageKey key = pageIcons[pageIndex].getKey();
+        if (key.getDpi() <= PREVIEW_DPI || pageCache.contains(key)) return;
+        requestRender(key.withPage(pageIndex, PREVIEW_DPI));
+    }
+
+    private void requestRender(PageImageCache.PageKey key) {
+        if (pageCache.contains(key) || pendingRenders.containsKey(key)) return;
 
-                // Drawing is attached by SignModeController when sign mode is enabled.
-                // But we expose a helper so the controller can attach listeners anytime.
-                pageWrapper.add(pageLabel);
-                pdfPanel.add(pageWrapper);
+        final int gen = generation.get();
+        final int pageIndex = key.getPageIndex();
+        final Rectangle tile = key.isTile()
+                ? TileRenderer.tileBounds(key.getTileColumn(), key.getTileRow(),
+                pageSizeInPixels(pageSizes[pageIndex], key.getDpi() / 72f))
+                : null;
+        if (parallelRenderer != null) {
+            ParallelPageRenderer.PageConsumer onRendered = new ParallelPageRenderer.PageConsumer() {
+                @Override
+                public void accept(int index, BufferedImage image) {
+                    if (gen != generation.get()) return;
+                    pageCache.put(key, image);
+                    publishPage(gen, key);
+                }
+
+                @Override
+                public void onFailure(int index, Exception e) {
+                    // Forget the attempt so the page or tile is requested again when it is next painted
+                    SwingUtilities.invokeLater(() -> {
+                        if (gen == generation.get()) pendingRenders.remove(key);
+                    });
+                }
+            };
+            pendingRenders.put(key, tile != null
+                    ? parallelRenderer.submitRegion(pageIndex, key.getDpi(), tile, onRendered)
+                    : parallelRenderer.submit(pageIndex, key.getDpi(), onRendered));
+            return;
+        }
+
+        pendingRenders.put(key, renderExecutor.submit(() -> {
+            // Skip work for a document that has since been closed or replaced.
+            if (gen != generation.get() || renderer == null) return;
+            try {
+                BufferedImage image = tile != null
+                        ? TileRenderer.renderRegion(renderer, pageIndex, key.getDpi(), tile)
+                        : renderer.renderImageWithDPI(pageIndex, key.getDpi());
+                pageCache.put(key, image);
+                publishPage(gen, key);
+            } catch (Exception e) {
+                log.error("Failed to render page " + (pageIndex + 1) + " at " + key.getDpi() + " DPI", e);
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generation.get()) pendingRenders.remove(key);
+                });
             }
+        }));
+    }
+
+    private void publishPage(int gen, PageImageCache.PageKey key) {
+        SwingUtilities.invokeLater(() -> {
+            if (gen != generation.get()) return;
+            pendingRenders.remove(key);
+            pdfPanel.getComponent(key.getPageIndex()).repaint();
+        });
+    }
 
-            pdfPanel.revalidate();
-            pdfPanel.repaint();
-            return true;
+    private void cancelPending(PageImageCache.PageKey key) {
+        Future<?> pending = pendingRenders.remove(key);
+        if (pending != null) pending.cancel(false);
+    }
 
-        } catch (UserCancelledPasswordEntryException ex) {
-            log.info("User cancelled password entry.");
-        } catch (Exception ex) {
-            log.error("Error rendering PDF", ex);
-            DialogUtils.showExceptionDialog(owner, "Unable to Display PDF Preview, Please try again.", ex);
+    private static PDRectangle displayedPageSize(PDPage page) {
+        PDRectangle cropBox = page.getCropBox();
+        int rotation = page.getRotation();
+        if (rotation == 90 || rotation == 270) {
+            return new PDRectangle(cropBox.getHeight(), cropBox.getWidth());
         }
-        return false;
+        return new PDRectangle(cropBox.getWidth(), cropBox.getHeight());
     }
 
-    public PDDocument getDocument() {
-        return document;
+    private static Dimension pageSizeInPixels(PDRectangle size, float scale) {
+        // Same rounding as PDFRenderer.renderImage so the bitmap fills the slot exactly.
+        int width = (int) Math.max(Math.floor(size.getWidth() * scale), 1);
+        int height = (int) Math.max(Math.floor(size.getHeight() * scale), 1);
+        return new Dimension(width, height);
     }
 
     public File getCurrentFile() {
@@ -107,24 +400,49 @@ public class PdfRendererService {
     }
 
     public void close() {
-        try {
-            if (document != null) document.close();
-        } catch (Exception e) {
-            log.error("Failed to close the current PDF document", e);
-            DialogUtils.showError(owner, "Unable to Close PDF",
-                    "An unexpected error occurred while closing the PDF. Please try again.");
-            System.exit(1);
-        } finally {
-            document = null;
-            currentFile = null;
-            pdfPanel.removeAll();
-            pdfPanel.revalidate();
-            pdfPanel.repaint();
+        generation.incrementAndGet();
+        if (loadTask != null) {
+            loadTask.cancel(false);
+            loadTask = null;
         }
+        for (PageImageCache.PageKey key : pendingRenders.keySet()) {
+            cancelPending(key);
+        }
+
+        final ParallelPageRenderer closingParallel = parallelRenderer;
+        parallelRenderer = null;
+        pageIcons = null;
+        pageLabels = null;
+        pageSizes = null;
+        pageCount = 0;
+        currentFile = null;
+        pdfPanel.removeAll();
+        pdfPanel.revalidate();
+        pdfPanel.repaint();
+
+        // Closed on the renderer thread, after any in-flight render, so PDFBox never sees a closed document.
+        renderExecutor.execute(() -> {
+            if (closingParallel != null) closingParallel.close();
+            PDDocument closing = document;
+            document = null;
+            renderer = null;
+            documentPassword = null;
+            if (closing == null) return;
+            try {
+                closing.close();
+            } catch (Exception e) {
+                log.error("Failed to close the current PDF document", e);
+                SwingUtilities.invokeLater(() -> {
+                    DialogUtils.showError(owner, "Unable to Close PDF",
+                            "An unexpected error occurred while closing the PDF. Please try again.");
+                    System.exit(1);
+                });
+            }
+        });
     }
 
     /* --------------------------
-       Password-aware loading
+       Password-aware loading (renderer thread, dialogs on the EDT)
      --------------------------- */
 
     private PDDocument tryLoadDocument(File file) throws Exception {
@@ -134,43 +452,79 @@ public class PdfRendererService {
         try {
             // Try without password first
             PDDocument doc = PDDocument.load(file);
-            owner.setPdfPassword(null);
+            documentPassword = null;
+            onEdt(() -> {
+                owner.setPdfPassword(null);
+                return null;
+            });
             return doc;
         } catch (org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException e) {
-            PasswordDialog dialog = new PasswordDialog(
+            PasswordDialog dialog = onEdt(() -> new PasswordDialog(
                     owner,
                     null,
                     "PDF Document Password required",
                     "Password",
                     "Open Document",
                     "Cancel"
-            );
+            ));
 
             while (attempts < maxAttempts) {
-                dialog.setVisible(true);
+                String pwd = onEdt(() -> {
+                    dialog.setVisible(true);
+                    return (!dialog.isConfirmed() || dialog.wasClosedByUser()) ? null : dialog.getValue();
+                });
 
-                if (!dialog.isConfirmed() || dialog.wasClosedByUser()) {
+                if (pwd == null) {
                     throw new UserCancelledPasswordEntryException("User cancelled password entry.");
                 }
 
                 try {
-                    String pwd = dialog.getValue();
-                    owner.setPdfPassword(pwd);
                     PDDocument doc = PDDocument.load(file, pwd);
+                    documentPassword = pwd;
+                    onEdt(() -> {
+                        owner.setPdfPassword(pwd);
+                        return null;
+                    });
                     return doc;
                 } catch (org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException ex) {
                     attempts++;
                     if (attempts < maxAttempts) {
                         int remaining = maxAttempts - attempts;
-                        dialog.showInvalidMessage(
-                                String.format("Invalid password — try again (<b>%d</b> left.)", remaining)
-                        );
+                        onEdt(() -> {
+                            dialog.showInvalidMessage(
+                                    String.format("Invalid password — try again (<b>%d</b> left.)", remaining)
+                            );
+                            return null;
+                        });
                     }
                 }
             }
 
-            DialogUtils.showError(owner, "Access Denied", "Maximum password attempts reached. PDF loading cancelled.");
+            onEdt(() -> {
+                DialogUtils.showError(owner, "Access Denied", "Maximum password attempts reached. PDF loading cancelled.");
+                return null;
+            });
             throw new UserCancelledPasswordEntryException("Max password attempts exceeded.");
         }
     }
+
+    private static <T> T onEdt(Callable<T> action) throws Exception {
+        Object[] result = new Object[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try {
+                    result[0] = action.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw new ExecutionException(cause);
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
 }
@@ -3,13 +3,17 @@ package com.codemuni.gui.pdfHandler;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseWheelEvent;
 import java.util.function.Consumer;
 
 /**
  * Wraps the PDF panel (pages inside) and updates page label based on scroll.
+ * Ctrl + mouse wheel zooms in/out around the current scroll position.
  */
 public class PdfScrollPane extends JScrollPane {
 
+    private static final float ZOOM_STEP = 1.1f;
+
     private final JPanel pdfPanel;      // The vertical BoxLayout host of pages
     private final JPanel wrapper;       // Centers pdfPanel horizontally
     private final PdfRendererService rendererService;
@@ -28,12 +32,60 @@ public class PdfScrollPane extends JScrollPane {
         getVerticalScrollBar().setUnitIncrement(16);
 
         getVerticalScrollBar().addAdjustmentListener(e -> updateCurrentPageBasedOnScroll());
+        // Fires on scroll, resize and view size changes: drives lazy page rendering
+        getViewport().addChangeListener(e -> notifyVisibleRegion());
+        setWheelScrollingEnabled(false);
+        addMouseWheelListener(this::onMouseWheel);
+    }
+
+    private void onMouseWheel(MouseWheelEvent e) {
+        if (!e.isControlDown()) {
+            // Wheel scrolling is disabled so Ctrl+wheel does not scroll too; scroll manually otherwise.
+            JScrollBar bar = e.isShiftDown() ? getHorizontalScrollBar() : getVerticalScrollBar();
+            int direction = e.getWheelRotation() < 0 ? -1 : 1;
+            int delta = e.getScrollType() == MouseWheelEvent.WHEEL_UNIT_SCROLL
+                    ? e.getUnitsToScroll() * bar.getUnitIncrement(direction)
+                    : direction * bar.getBlockIncrement(direction);
+            bar.setValue(bar.getValue() + delta);
+            return;
+        }
+        if (rendererService.getPageCountSafe() == 0) return;
+
+        float factor = e.getWheelRotation() < 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+        JScrollBar vertical = getVerticalScrollBar();
+        double position = vertical.getMaximum() > 0 ? vertical.getValue() / (double) vertical.getMaximum() : 0;
+
+        rendererService.setZoom(rendererService.getZoom() * factor);
+        // Keep the same relative position once the resized slots have been laid out.
+        SwingUtilities.invokeLater(() -> vertical.setValue((int) Math.round(position * vertical.getMaximum())));
     }
 
     public JPanel getPdfPanel() {
         return pdfPanel;
     }
 
+    /**
+     * Scrolls so that the top of page {@code pageIndex} is at the top of the viewport.
+     */
+    public void scrollToPage(int pageIndex) {
+        Component view = getViewport().getView();
+        if (view == null || pageIndex < 0 || pageIndex >= pdfPanel.getComponentCount()
+                || !SwingUtilities.isDescendingFrom(pdfPanel, view)) {
+            return;
+        }
+        Rectangle page = SwingUtilities.convertRectangle(pdfPanel, pdfPanel.getComponent(pageIndex).getBounds(), view);
+        int maxY = Math.max(0, view.getHeight() - getViewport().getExtentSize().height);
+        getViewport().setViewPosition(new Point(getViewport().getViewPosition().x, Math.min(page.y, maxY)));
+    }
+
+    private void notifyVisibleRegion() {
+        Component view = getViewport().getView();
+        if (view == null || !SwingUtilities.isDescendingFrom(pdfPanel, view)) return;
+
+        Rectangle visible = SwingUtilities.convertRectangle(view, getViewport().getViewRect(), pdfPanel);
+        rendererService.onViewportChanged(visible);
+    }
+
     private void updateCurrentPageBasedOnScroll() {
         int totalPages = rendererService.getPageCountSafe();
         if (totalPages <= 0 || pdfPanel.getComponentCount() == 0) {
@@ -22,7 +22,7 @@ import static com.codemuni.utils.AppConstants.APP_NAME;
 /**
  * Responsibilities:
  * - Window frame & layout
- * - Orchestrates top bar, scroll pane, renderer, and sign controller
+ * - Orchestrates top bar, scroll pane, thumbnail navigator, renderer, and sign controller
  * - File open & preferences (last directory)
  * - Title updates & placeholder toggle
  */
@@ -44,6 +44,7 @@ public class PdfViewerMain extends JFrame {
     // Collaborators
     private final TopBarPanel topBar;
     private final PdfScrollPane pdfScrollPane;
+    private final ThumbnailPanel thumbnailPanel;
     private final PlaceholderPanel placeholderPanel;
     private final PdfRendererService pdfRendererService;
     private final SignModeController signModeController;
@@ -89,10 +90,12 @@ public class PdfViewerMain extends JFrame {
                 pdfRendererService,
                 topBar::setPageInfoText // callback to update page label
         );
+        thumbnailPanel = new ThumbnailPanel(pdfScrollPane::scrollToPage);
         placeholderPanel = new PlaceholderPanel(this::openPdf);
 
         setLayout(new BorderLayout());
         add(topBar, BorderLayout.NORTH);
+        add(thumbnailPanel, BorderLayout.WEST);
         add(pdfScrollPane, BorderLayout.CENTER);
 
         showPlaceholder(true);
@@ -126,10 +129,12 @@ public class PdfViewerMain extends JFrame {
     private void showPlaceholder(boolean show) {
         if (show) {
             pdfScrollPane.setViewportView(placeholderPanel);
+            thumbnailPanel.setVisible(false);
             topBar.setSignButtonVisible(false);
             topBar.setPageInfoText("");
         } else {
             pdfScrollPane.setViewportView(pdfScrollPane.getPdfPanel());
+            thumbnailPanel.setVisible(true);
             topBar.setSignButtonVisible(true);
         }
         signModeController.resetSignModeUI();
@@ -161,16 +166,18 @@ public class PdfViewerMain extends JFrame {
 
     private void loadAndRenderPdf(File file) {
         setLoadingState(true);
-        SwingUtilities.invokeLater(() -> {
-            boolean ok = pdfRendererService.render(file); // handles password internally
+        // Parsing runs on the renderer thread; the callback comes back on the EDT and pages fill in afterwards.
+        pdfRendererService.render(file, ok -> { // handles password internally
             setLoadingState(false);
             if (ok) {
                 setWindowTitle(file.getAbsolutePath());
                 topBar.setSignButtonVisible(true);
                 topBar.setPageInfoText("Page: 1/" + pdfRendererService.getPageCountSafe());
                 showPlaceholder(false);
+                thumbnailPanel.load(file, pdfPassword);
             } else {
                 selectedPdfFile = null;
+                thumbnailPanel.clear();
                 topBar.setSignButtonVisible(false);
                 topBar.setPageInfoText("");
                 showPlaceholder(true);
@@ -128,7 +128,6 @@ public class SignModeController {
     private void attachDrawingListenersToAllPages() {
         JPanel pdfPanel = rendererService.getPdfPanel();
         int totalPages = rendererService.getPageCountSafe();
-        float scale = PdfRendererService.RENDER_DPI / 72f;
 
         for (int i = 0; i < totalPages; i++) {
             // Each child is a page wrapper (FlowLayout) with one JLabel inside
@@ -136,7 +135,7 @@ public class SignModeController {
             if (wrapper instanceof JPanel) {
                 JLabel pageLabel = findPageLabel((JPanel) wrapper);
                 if (pageLabel != null) {
-                    enableRectangleDrawing(pageLabel, i, scale);
+                    enableRectangleDrawing(pageLabel, i);
                 }
             }
         }
@@ -162,7 +161,7 @@ public class SignModeController {
        Drawing + Signing
      --------------------------- */
 
-    private void enableRectangleDrawing(JLabel pageLabel, int pageIndex, float scale) {
+    private void enableRectangleDrawing(JLabel pageLabel, int pageIndex) {
 
         // Avoid duplicate listeners by clearing previous UI and creating a fresh BasicLabelUI
         pageLabel.setUI(new BasicLabelUI() {
@@ -213,7 +212,9 @@ public class SignModeController {
 
                 SwingUtilities.invokeLater(() -> {
                     try {
+                        // Slot size and scale follow the current zoom level, whatever resolution is painted
                         int imageHeight = pageLabel.getIcon().getIconHeight();
+                        float scale = rendererService.getRenderScale();
                         int[] coords = SelectionUtils.convertToItextRectangle(
                                 e.getX(), e.getY(),
                                 localStartPoint.x, localStartPoint.y,
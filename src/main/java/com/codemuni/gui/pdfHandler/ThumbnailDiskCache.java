@@ -0,0 +1,196 @@
+package com.codemuni.gui.pdfHandler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent page-thumbnail cache.
+ * <p>
+ * Layout: {@code <root>/<sha256 of the file content>-w<width>/<page>.png}, plus a {@code pages} file written
+ * once every thumbnail of the document is stored. Keying by content (not path) means a renamed or copied
+ * document still hits, and a document modified in place never shows stale thumbnails.
+ * The directory modification time is refreshed on every use, and {@link #evictToBudget()} deletes whole
+ * documents, least recently used first, until the cache fits its byte budget.
+ * <p>
+ * Methods do I/O and must not be called on the EDT.
+ */
+public class ThumbnailDiskCache {
+
+    private static final Log log = LogFactory.getLog(ThumbnailDiskCache.class);
+    private static final String COMPLETE_MARKER = "pages";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final long maxBytes;
+    private final int width;
+
+    public ThumbnailDiskCache(Path root, long maxBytes, int width) {
+        this.root = root;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.width = width;
+    }
+
+    public static String contentHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * All thumbnails of a completely cached document, in page order, or null if any of them is missing.
+     */
+    public List<BufferedImage> loadAll(String hash) {
+        Path dir = documentDir(hash);
+        Path marker = dir.resolve(COMPLETE_MARKER);
+        if (!Files.isRegularFile(marker)) return null;
+        try {
+            int pageCount = Integer.parseInt(new String(Files.readAllBytes(marker), StandardCharsets.US_ASCII).trim());
+            List<BufferedImage> images = new ArrayList<>(pageCount);
+            for (int i = 0; i < pageCount; i++) {
+                BufferedImage image = load(hash, i);
+                if (image == null) return null;
+                images.add(image);
+            }
+            touch(dir);
+            return images;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable thumbnail cache entry " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public BufferedImage load(String hash, int pageIndex) {
+        Path file = documentDir(hash).resolve(pageIndex + ".png");
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            return ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            log.warn("Unreadable cached thumbnail " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void store(String hash, int pageIndex, BufferedImage image) {
+        Path dir = documentDir(hash);
+        try {
+            Files.createDirectories(dir);
+            // Written next to the target and moved into place, so readers never see a partial file.
+            Path tmp = Files.createTempFile(dir, pageIndex + "-", ".tmp");
+            try {
+                ImageIO.write(image, "png", tmp.toFile());
+                Files.move(tmp, dir.resolve(pageIndex + ".png"), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to cache thumbnail of page " + (pageIndex + 1) + ": " + e.getMessage());
+        }
+    }
+
+    public void markComplete(String hash, int pageCount) {
+        Path dir = documentDir(hash);
+        try {
+            Files.write(dir.resolve(COMPLETE_MARKER), String.valueOf(pageCount).getBytes(StandardCharsets.US_ASCII));
+            touch(dir);
+        } catch (IOException e) {
+            log.warn("Failed to finalize thumbnail cache entry " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes least recently used documents until the cache is within its byte budget.
+     */
+    public void evictToBudget() {
+        if (!Files.isDirectory(root)) return;
+        List<Path> documents;
+        try (Stream<Path> entries = Files.list(root)) {
+            documents = entries.filter(Files::isDirectory)
+                    .sorted(Comparator.comparing(ThumbnailDiskCache::lastModified))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("Failed to list thumbnail cache: " + e.getMessage());
+            return;
+        }
+
+        long total = 0;
+        List<Long> sizes = new ArrayList<>(documents.size());
+        for (Path document : documents) {
+            long size = sizeOf(document);
+            sizes.add(size);
+            total += size;
+        }
+        for (int i = 0; i < documents.size() && total > maxBytes; i++) {
+            if (deleteRecursively(documents.get(i))) {
+                total -= sizes.get(i);
+            }
+        }
+    }
+
+    private Path documentDir(String hash) {
+        return root.resolve(hash + "-w" + width);
+    }
+
+    private static void touch(Path dir) throws IOException {
+        Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean deleteRecursively(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to evict thumbnail cache entry " + dir + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
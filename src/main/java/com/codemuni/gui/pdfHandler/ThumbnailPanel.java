@@ -0,0 +1,203 @@
+package com.codemuni.gui.pdfHandler;
+
+import com.codemuni.config.ConfigManager;
+import com.codemuni.utils.AppConstants;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Page navigator shown next to the PdfScrollPane.
+ * <p>
+ * Thumbnails are produced on a background thread with its own PDDocument (PDFBox is not thread-safe,
+ * so the main renderer's document is never shared) and stored in a {@link ThumbnailDiskCache}.
+ * A document seen before is shown straight from the disk cache without being parsed. Thumbnails of
+ * encrypted documents are kept in memory only, so their page content never lands on disk unencrypted.
+ * Clicking a thumbnail calls {@code onPageSelected} with the page index.
+ */
+public class ThumbnailPanel extends JPanel {
+    private static final Log log = LogFactory.getLog(ThumbnailPanel.class);
+
+    static final int THUMBNAIL_WIDTH = 110;
+    private static final int PANEL_WIDTH = THUMBNAIL_WIDTH + 40;
+    private static final Color PLACEHOLDER_FILL = new Color(245, 245, 245);
+
+    private final JPanel thumbnails = new JPanel();
+    private final IntConsumer onPageSelected;
+    private final ThumbnailDiskCache diskCache = new ThumbnailDiskCache(
+            AppConstants.THUMBNAIL_CACHE_DIR_PATH, ConfigManager.getThumbnailCacheBytes(), THUMBNAIL_WIDTH);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pdf-thumbnailer");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY); // never compete with the visible pages
+        return t;
+    });
+    // Bumped on every load/clear; work tagged with an older value is discarded
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Confined to the EDT
+    private JLabel[] labels = new JLabel[0];
+    private Future<?> task;
+
+    public ThumbnailPanel(IntConsumer onPageSelected) {
+        super(new BorderLayout());
+        this.onPageSelected = onPageSelected;
+
+        thumbnails.setLayout(new BoxLayout(thumbnails, BoxLayout.Y_AXIS));
+        thumbnails.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JScrollPane scrollPane = new JScrollPane(thumbnails);
+        scrollPane.setBorder(BorderFactory.createMatteBorder(0, 0, 0, 1, UIManager.getColor("Separator.foreground")));
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        add(scrollPane, BorderLayout.CENTER);
+        setPreferredSize(new Dimension(PANEL_WIDTH, 0));
+    }
+
+    /**
+     * Shows the thumbnails of {@code file}, from the disk cache or generated in the background.
+     * Must be called on the EDT.
+     */
+    public void load(File file, String password) {
+        clear();
+        final int gen = generation.get();
+        task = executor.submit(() -> generate(gen, file, password));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        labels = new JLabel[0];
+        thumbnails.removeAll();
+        thumbnails.revalidate();
+        thumbnails.repaint();
+    }
+
+    private void generate(int gen, File file, String password) {
+        try {
+            boolean persistent = password == null;
+            String hash = persistent ? ThumbnailDiskCache.contentHash(file) : null;
+            List<BufferedImage> cached = persistent ? diskCache.loadAll(hash) : null;
+            if (cached != null) {
+                SwingUtilities.invokeLater(() -> {
+                    if (gen != generation.get()) return;
+                    createSlots(cached.size());
+                    for (int i = 0; i < cached.size(); i++) {
+                        labels[i].setIcon(new ImageIcon(cached.get(i)));
+                    }
+                });
+                return;
+            }
+
+            try (PDDocument document = password == null ? PDDocument.load(file) : PDDocument.load(file, password)) {
+                // Also covers documents that open without a password but are encrypted for an owner
+                persistent &= !document.isEncrypted();
+                int pageCount = document.getNumberOfPages();
+                SwingUtilities.invokeLater(() -> {
+                    if (gen == generation.get()) createSlots(pageCount);
+                });
+
+                PDFRenderer renderer = new PDFRenderer(document);
+                for (int i = 0; i < pageCount; i++) {
+                    if (gen != generation.get()) return;
+                    BufferedImage image = persistent ? diskCache.load(hash, i) : null;
+                    if (image == null) {
+                        image = renderer.renderImage(i, scaleFor(document.getPage(i)), ImageType.RGB);
+                        if (persistent) diskCache.store(hash, i, image);
+                    }
+                    publish(gen, i, image);
+                }
+                if (persistent) diskCache.markComplete(hash, pageCount);
+            }
+            if (persistent) diskCache.evictToBudget();
+        } catch (Exception e) {
+            // The navigator is optional; the document itself is still shown.
+            log.warn("Failed to generate thumbnails for " + file.getName(), e);
+        }
+    }
+
+    private static float scaleFor(PDPage page) {
+        int rotation = page.getRotation();
+        float widthPt = (rotation == 90 || rotation == 270)
+                ? page.getCropBox().getHeight()
+                : page.getCropBox().getWidth();
+        return THUMBNAIL_WIDTH / widthPt;
+    }
+
+    private void publish(int gen, int pageIndex, BufferedImage image) {
+        SwingUtilities.invokeLater(() -> {
+            if (gen != generation.get() || pageIndex >= labels.length) return;
+            labels[pageIndex].setIcon(new ImageIcon(image));
+        });
+    }
+
+    private void createSlots(int pageCount) {
+        thumbnails.removeAll();
+        labels = new JLabel[pageCount];
+        Icon placeholder = new PlaceholderIcon(THUMBNAIL_WIDTH, Math.round(THUMBNAIL_WIDTH * 1.414f));
+        for (int i = 0; i < pageCount; i++) {
+            final int pageIndex = i;
+            JLabel label = new JLabel(String.valueOf(i + 1), placeholder, SwingConstants.CENTER);
+            label.setHorizontalTextPosition(SwingConstants.CENTER);
+            label.setVerticalTextPosition(SwingConstants.BOTTOM);
+            label.setAlignmentX(Component.CENTER_ALIGNMENT);
+            label.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
+            label.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            label.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    onPageSelected.accept(pageIndex);
+                }
+            });
+            labels[i] = label;
+            thumbnails.add(label);
+        }
+        thumbnails.revalidate();
+        thumbnails.repaint();
+    }
+
+    private static final class PlaceholderIcon implements Icon {
+        private final int width;
+        private final int height;
+
+        private PlaceholderIcon(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(PLACEHOLDER_FILL);
+            g.fillRect(x, y, width, height);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
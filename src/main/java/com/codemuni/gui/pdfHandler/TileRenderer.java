@@ -0,0 +1,67 @@
+package com.codemuni.gui.pdfHandler;
+
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Rasterizes fixed-size tiles of a page instead of the whole page.
+ * <p>
+ * {@code PDFRenderer.renderImageWithDPI} allocates one bitmap for the full page, which for A0 drawings
+ * (and larger) at viewing resolution is hundreds of MB. Here the page is drawn through a translated
+ * Graphics2D into a bitmap of one tile, so memory only depends on the tile size.
+ */
+public final class TileRenderer {
+
+    public static final int TILE_SIZE = 512;
+    // Pages whose bitmap at the current DPI would exceed this many pixels (~32 MB as INT_RGB) are tiled
+    public static final long TILED_PAGE_PIXELS = 8L * 1024 * 1024;
+
+    private TileRenderer() {
+    }
+
+    public static boolean needsTiling(Dimension pageSizeInPixels) {
+        return (long) pageSizeInPixels.width * pageSizeInPixels.height > TILED_PAGE_PIXELS;
+    }
+
+    public static int columns(Dimension pageSizeInPixels) {
+        return (pageSizeInPixels.width + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public static int rows(Dimension pageSizeInPixels) {
+        return (pageSizeInPixels.height + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Pixel bounds of a tile within the page bitmap; edge tiles are clipped to the page.
+     */
+    public static Rectangle tileBounds(int column, int row, Dimension pageSizeInPixels) {
+        int x = column * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        return new Rectangle(x, y,
+                Math.min(TILE_SIZE, pageSizeInPixels.width - x),
+                Math.min(TILE_SIZE, pageSizeInPixels.height - y));
+    }
+
+    /**
+     * Renders {@code region} (page pixels at {@code dpi}) of the page. Not thread-safe with respect to
+     * {@code renderer}, like every other PDFRenderer call.
+     */
+    public static BufferedImage renderRegion(PDFRenderer renderer, int pageIndex, float dpi, Rectangle region)
+            throws IOException {
+        BufferedImage tile = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            g.clearRect(0, 0, region.width, region.height);
+            g.translate(-region.x, -region.y);
+            float scale = dpi / 72f;
+            renderer.renderPageToGraphics(pageIndex, g, scale, scale);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+}
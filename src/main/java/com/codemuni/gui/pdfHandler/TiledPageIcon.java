@@ -0,0 +1,99 @@
+package com.codemuni.gui.pdfHandler;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Page slot for pages too large to hold as one bitmap (see {@link TileRenderer}).
+ * Only the tiles intersecting the painted clip (i.e. the visible part of the viewport) are painted and,
+ * when missing from the cache, requested; meanwhile the matching region of a fallback bitmap
+ * (the low-DPI preview) is painted scaled, or the placeholder if there is none.
+ */
+public class TiledPageIcon extends PdfPageIcon {
+    private static final Color PLACEHOLDER_FILL = new Color(245, 245, 245);
+
+    private final PageImageCache cache;
+    private final List<PageImageCache.PageKey> fallbacks;
+    private final Consumer<PageImageCache.PageKey> onTileMissing;
+    private final Dimension size;
+
+    public TiledPageIcon(int width, int height, PageImageCache cache, PageImageCache.PageKey key,
+                         List<PageImageCache.PageKey> fallbacks, Consumer<PageImageCache.PageKey> onTileMissing) {
+        super(width, height, cache, key, fallbacks, null);
+        this.cache = cache;
+        this.fallbacks = fallbacks;
+        this.onTileMissing = onTileMissing;
+        this.size = new Dimension(width, height);
+    }
+
+    /**
+     * A tiled page never has a whole-page bitmap.
+     */
+    @Override
+    public boolean hasImage() {
+        return false;
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        Rectangle page = new Rectangle(x, y, size.width, size.height);
+        Rectangle clip = g.getClipBounds();
+        Rectangle visible = clip == null ? page : page.intersection(clip);
+        if (visible.isEmpty()) return;
+
+        int firstColumn = (visible.x - x) / TileRenderer.TILE_SIZE;
+        int lastColumn = (visible.x + visible.width - 1 - x) / TileRenderer.TILE_SIZE;
+        int firstRow = (visible.y - y) / TileRenderer.TILE_SIZE;
+        int lastRow = (visible.y + visible.height - 1 - y) / TileRenderer.TILE_SIZE;
+
+        BufferedImage fallback = null;
+        boolean fallbackLoaded = false;
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    PageImageCache.PageKey tileKey = getKey().withTile(column, row);
+                    Rectangle bounds = TileRenderer.tileBounds(column, row, size);
+                    int dx = x + bounds.x;
+                    int dy = y + bounds.y;
+
+                    BufferedImage tile = cache.get(tileKey);
+                    if (tile != null) {
+                        g2.drawImage(tile, dx, dy, null);
+                        continue;
+                    }
+
+                    if (!fallbackLoaded) {
+                        fallback = firstAvailableFallback();
+                        fallbackLoaded = true;
+                    }
+                    if (fallback != null) {
+                        double sx = fallback.getWidth() / (double) size.width;
+                        double sy = fallback.getHeight() / (double) size.height;
+                        g2.drawImage(fallback, dx, dy, dx + bounds.width, dy + bounds.height,
+                                (int) (bounds.x * sx), (int) (bounds.y * sy),
+                                (int) Math.ceil((bounds.x + bounds.width) * sx),
+                                (int) Math.ceil((bounds.y + bounds.height) * sy), null);
+                    } else {
+                        g2.setColor(PLACEHOLDER_FILL);
+                        g2.fillRect(dx, dy, bounds.width, bounds.height);
+                    }
+                    onTileMissing.accept(tileKey);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private BufferedImage firstAvailableFallback() {
+        for (PageImageCache.PageKey fallbackKey : fallbacks) {
+            BufferedImage image = cache.get(fallbackKey);
+            if (image != null) return image;
+        }
+        return null;
+    }
+}
@@ -1,6 +1,8 @@
 package com.codemuni.gui.settings;
 
 import com.codemuni.config.ConfigManager;
+import com.codemuni.core.keyStoresProvider.PKCS11SessionManager;
+import com.codemuni.core.keyStoresProvider.PfxUnlockCache;
 import com.codemuni.gui.ConfirmWordDialog;
 import com.codemuni.gui.DialogUtils;
 import com.codemuni.utils.AppConstants;
@@ -101,8 +103,18 @@ public class KeystoreSettingsPanel extends JPanel {
         browseButton.putClientProperty("JButton.buttonType", "roundRect");
         browseButton.addActionListener(e -> browseAndAddPath(this::addPkcs11Path));
 
+        JButton lockButton = new JButton("Lock Tokens");
+        lockButton.putClientProperty("JButton.buttonType", "roundRect");
+        lockButton.setToolTipText("Log out of all PKCS#11 tokens and forget unlocked PFX files; the PIN/password is asked again on the next signature.");
+        lockButton.addActionListener(e -> {
+            PKCS11SessionManager.getInstance().lockAll();
+            PfxUnlockCache.getInstance().clear();
+            DialogUtils.showInfo(parentDialog, "Tokens Locked", "All PKCS#11 token sessions have been logged out and unlocked PFX files forgotten.");
+        });
+
         JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
         top.add(browseButton);
+        top.add(lockButton);
         panel.add(top, BorderLayout.NORTH);
 
         pkcs11Container.setLayout(new BoxLayout(pkcs11Container, BoxLayout.Y_AXIS));
@@ -87,7 +87,7 @@ public class SecuritySettingsPanel extends JPanel {
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.weightx = 1.0;
 
-        timestampField = createTextField("Enter Timestamp URL", "URL of the timestamp server");
+        timestampField = createTextField("Enter Timestamp URL", "URL of the timestamp server; list backup servers after it, separated by commas");
         JPanel urlWrapper = createLabeledField("Timestamp URL", timestampField);
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -0,0 +1,110 @@
+package com.codemuni.model;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a batch signing run: per-file status/timing plus overall throughput.
+ */
+public class BatchSigningResult {
+
+    private final List<FileResult> fileResults = Collections.synchronizedList(new ArrayList<>());
+    private long startedAtNanos;
+    private long finishedAtNanos;
+
+    public void markStarted() {
+        startedAtNanos = System.nanoTime();
+    }
+
+    public void markFinished() {
+        finishedAtNanos = System.nanoTime();
+    }
+
+    public void add(FileResult fileResult) {
+        fileResults.add(fileResult);
+    }
+
+    public List<FileResult> getFileResults() {
+        synchronized (fileResults) {
+            return new ArrayList<>(fileResults);
+        }
+    }
+
+    public List<FileResult> getFailures() {
+        return getFileResults().stream().filter(r -> !r.isSuccess()).collect(Collectors.toList());
+    }
+
+    public int getTotalCount() {
+        return fileResults.size();
+    }
+
+    public int getSuccessCount() {
+        return getTotalCount() - getFailures().size();
+    }
+
+    public long getElapsedMillis() {
+        long end = finishedAtNanos != 0 ? finishedAtNanos : System.nanoTime();
+        return startedAtNanos == 0 ? 0 : (end - startedAtNanos) / 1_000_000;
+    }
+
+    /**
+     * Successfully signed documents per second of wall-clock time.
+     */
+    public double getThroughputPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed <= 0 ? 0 : getSuccessCount() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchSigningResult{total=%d, signed=%d, failed=%d, elapsedMs=%d, docsPerSec=%.2f}",
+                getTotalCount(), getSuccessCount(), getFailures().size(), getElapsedMillis(), getThroughputPerSecond());
+    }
+
+    public static class FileResult {
+        private final Path input;
+        private final Path output;
+        private final long durationMillis;
+        private final Exception error;
+
+        public FileResult(Path input, Path output, long durationMillis, Exception error) {
+            this.input = input;
+            this.output = output;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "FileResult{" +
+                    "input=" + input +
+                    ", output=" + output +
+                    ", durationMillis=" + durationMillis +
+                    ", error=" + (error != null ? error.getMessage() : null) +
+                    '}';
+        }
+    }
+}
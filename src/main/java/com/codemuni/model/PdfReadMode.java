@@ -0,0 +1,46 @@
+package com.codemuni.model;
+
+/**
+ * How an input PDF is opened for signing.
+ */
+public enum PdfReadMode {
+    /**
+     * Parse the whole document into memory (iText default).
+     */
+    FULL("Full", "FULL"),
+    /**
+     * Partial read over a memory-mapped source; objects are parsed on demand.
+     */
+    MEMORY_MAPPED("Memory mapped", "MEMORY_MAPPED"),
+    /**
+     * Partial read over a plain RandomAccessFile, for platforms where mapping is undesirable.
+     */
+    RANDOM_ACCESS("Random access", "RANDOM_ACCESS"),
+    /**
+     * FULL for small files, MEMORY_MAPPED above the configured size threshold.
+     */
+    AUTO("Automatic", "AUTO");
+
+    private final String label;
+    private final String id;
+
+    PdfReadMode(String label, String id) {
+        this.label = label;
+        this.id = id;
+    }
+
+    public static PdfReadMode fromLabel(String label) {
+        for (PdfReadMode mode : values()) {
+            if (mode.label.equals(label)) return mode;
+        }
+        return null;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
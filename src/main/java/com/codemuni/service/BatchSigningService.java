@@ -0,0 +1,247 @@
+package com.codemuni.service;
+
+import com.codemuni.core.keyStoresProvider.KeyStoreProvider;
+import com.codemuni.core.keyStoresProvider.SessionKeyStoreProvider;
+import com.codemuni.core.signer.AppearanceOptions;
+import com.codemuni.core.signer.CustomTSAClientBouncyCastle;
+import com.codemuni.core.signer.FailoverTSAClient;
+import com.codemuni.core.signer.PdfReaderFactory;
+import com.codemuni.core.signer.Signer;
+import com.codemuni.core.signer.SigningProgressListener;
+import com.codemuni.core.signer.SigningStage;
+import com.codemuni.core.signer.TsaEndpointStats;
+import com.codemuni.exceptions.SigningProcessException;
+import com.codemuni.model.BatchSigningResult;
+import com.codemuni.model.BatchSigningResult.FileResult;
+import com.codemuni.model.PdfReadMode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless batch signing engine.
+ * <p>
+ * The key session is resolved once per batch (see {@link SessionKeyStoreProvider}), placement and appearance
+ * are defined once through {@link AppearanceOptions}, and documents are pushed through {@link Signer} on a
+ * bounded worker pool. No dialogs are shown; failures are collected per file in {@link BatchSigningResult}.
+ * <p>
+ * With timestamping, a document gives its worker slot back while it waits for the TSA, so up to
+ * {@link #setTimestampWindow(int) the timestamp window} requests are in flight while the workers keep hashing
+ * and signing the next documents; TSA latency then no longer limits throughput to one request per worker.
+ */
+public class BatchSigningService {
+
+    private static final Log log = LogFactory.getLog(BatchSigningService.class);
+    private static final String PDF_EXTENSION = ".pdf";
+    private static final int DEFAULT_TIMESTAMP_WINDOW = 8;
+
+    private final KeyStoreProvider keyStoreProvider;
+    private final AppearanceOptions appearanceOptions;
+    private final CustomTSAClientBouncyCastle tsaClient;
+    private final int workerCount;
+    private String pdfPassword;
+    private PdfReadMode readMode = PdfReadMode.AUTO;
+    private int timestampWindow = DEFAULT_TIMESTAMP_WINDOW;
+
+    /**
+     * @param keyStoreProvider  an already initialised (logged in) provider; key and chain are read from it once
+     * @param appearanceOptions appearance and placement shared by every document of the batch
+     * @param tsaClient         timestamp client, or null when timestamping is disabled
+     * @param workerCount       maximum number of documents signed concurrently
+     */
+    public BatchSigningService(KeyStoreProvider keyStoreProvider, AppearanceOptions appearanceOptions,
+                               CustomTSAClientBouncyCastle tsaClient, int workerCount) {
+        this.keyStoreProvider = Objects.requireNonNull(keyStoreProvider, "keyStoreProvider must not be null");
+        this.appearanceOptions = Objects.requireNonNull(appearanceOptions, "appearanceOptions must not be null");
+        this.tsaClient = tsaClient;
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    public BatchSigningService(KeyStoreProvider keyStoreProvider, AppearanceOptions appearanceOptions,
+                               CustomTSAClientBouncyCastle tsaClient) {
+        this(keyStoreProvider, appearanceOptions, tsaClient, Runtime.getRuntime().availableProcessors());
+    }
+
+    public void setPdfPassword(String pdfPassword) {
+        this.pdfPassword = pdfPassword;
+    }
+
+    public void setReadMode(PdfReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    /**
+     * Maximum number of timestamp requests in flight at once; keeps a throttling TSA from being flooded.
+     */
+    public void setTimestampWindow(int timestampWindow) {
+        this.timestampWindow = Math.max(1, timestampWindow);
+    }
+
+    /**
+     * Signs every PDF directly inside {@code inputDir} and writes the results with the same file name to {@code outputDir}.
+     */
+    public BatchSigningResult signDirectory(Path inputDir, Path outputDir) throws IOException {
+        if (!Files.isDirectory(inputDir)) {
+            throw new IOException("Input is not a directory: " + inputDir);
+        }
+        if (inputDir.toAbsolutePath().normalize().equals(outputDir.toAbsolutePath().normalize())) {
+            throw new IOException("Output directory must differ from input directory.");
+        }
+        return signFiles(listPdfFiles(inputDir), outputDir);
+    }
+
+    /**
+     * Signs the given PDFs into {@code outputDir}. The key session is resolved once before any worker starts.
+     */
+    public BatchSigningResult signFiles(List<Path> inputs, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+
+        BatchSigningResult result = new BatchSigningResult();
+        result.markStarted();
+
+        KeyStoreProvider session;
+        try {
+            session = SessionKeyStoreProvider.snapshotOf(keyStoreProvider);
+        } catch (Exception e) {
+            throw new SigningProcessException(Signer.buildDetailedMessage("Unable to open key session for batch", e), e);
+        }
+
+        // Threads beyond workerCount only ever wait on the TSA; the slots below bound the real work
+        int threadCount = tsaClient != null ? workerCount + timestampWindow : workerCount;
+        Semaphore workSlots = new Semaphore(workerCount);
+        Semaphore timestampSlots = new Semaphore(timestampWindow);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new BatchThreadFactory());
+        CompletionService<FileResult> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            for (Path input : inputs) {
+                Path output = outputDir.resolve(input.getFileName().toString());
+                completionService.submit(() -> signOne(session, input, output, new StageGate(workSlots, timestampSlots)));
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                FileResult fileResult = completionService.take().get();
+                result.add(fileResult);
+                if (fileResult.isSuccess()) {
+                    log.info("Signed " + fileResult.getInput() + " in " + fileResult.getDurationMillis() + " ms");
+                } else {
+                    log.warn("Failed to sign " + fileResult.getInput() + ": " + fileResult.getError().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Batch signing interrupted; " + result.getTotalCount() + " of " + inputs.size() + " files processed.");
+        } catch (ExecutionException e) {
+            // signOne never throws; treat anything here as a bug in the engine itself
+            throw new SigningProcessException("Batch signing worker failed unexpectedly", e);
+        } finally {
+            executor.shutdownNow();
+            result.markFinished();
+        }
+
+        log.info(result.toString());
+        if (tsaClient instanceof FailoverTSAClient) {
+            for (String url : ((FailoverTSAClient) tsaClient).getUrls()) {
+                log.info("Timestamp server " + TsaEndpointStats.forUrl(url));
+            }
+        }
+        return result;
+    }
+
+    private FileResult signOne(KeyStoreProvider session, Path input, Path output, StageGate gate) {
+        long start = System.nanoTime();
+        gate.begin();
+        try {
+            // Each document gets its own options copy; the signer mutates the watermark image in place.
+            AppearanceOptions options = new AppearanceOptions(appearanceOptions);
+            new Signer().sign(() -> PdfReaderFactory.open(input.toFile(), pdfPassword, readMode),
+                    session, options, tsaClient, output, gate);
+
+            return new FileResult(input, output, elapsedMillis(start), null);
+        } catch (Exception e) {
+            return new FileResult(input, null, elapsedMillis(start), e);
+        } finally {
+            gate.end();
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    static List<Path> listPdfFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                if (Files.isRegularFile(p) && p.getFileName().toString().toLowerCase().endsWith(PDF_EXTENSION)) {
+                    files.add(p);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Moves one document between the shared slots: it holds a work slot while it is prepared, hashed, signed,
+     * embedded and written, and swaps it for a timestamp slot while its TSA request is outstanding.
+     */
+    private static final class StageGate implements SigningProgressListener {
+        private final Semaphore workSlots;
+        private final Semaphore timestampSlots;
+        private boolean holdsWorkSlot;
+        private boolean holdsTimestampSlot;
+
+        StageGate(Semaphore workSlots, Semaphore timestampSlots) {
+            this.workSlots = workSlots;
+            this.timestampSlots = timestampSlots;
+        }
+
+        void begin() {
+            workSlots.acquireUninterruptibly();
+            holdsWorkSlot = true;
+        }
+
+        @Override
+        public void onStage(SigningStage stage) {
+            if (stage == SigningStage.TIMESTAMP && holdsWorkSlot) {
+                workSlots.release();
+                holdsWorkSlot = false;
+                timestampSlots.acquireUninterruptibly();
+                holdsTimestampSlot = true;
+            } else if (stage == SigningStage.EMBED && holdsTimestampSlot) {
+                timestampSlots.release();
+                holdsTimestampSlot = false;
+                workSlots.acquireUninterruptibly();
+                holdsWorkSlot = true;
+            }
+        }
+
+        void end() {
+            if (holdsWorkSlot) workSlots.release();
+            if (holdsTimestampSlot) timestampSlots.release();
+            holdsWorkSlot = false;
+            holdsTimestampSlot = false;
+        }
+    }
+
+    private static final class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "batch-signer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.codemuni.service;
+
+import com.codemuni.model.KeystoreAndCertificateInfo;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Discovers signing certificates from several sources (Windows store, each PKCS#11 library, ...) concurrently.
+ * <p>
+ * Every source runs on its own daemon thread and its results are handed to the {@link Listener} as soon as
+ * that source is done, so the fastest store is usable while slower ones are still being probed.
+ * A source that does not answer within the timeout (e.g. a hanging PKCS#11 driver) is reported as failed
+ * and abandoned; its thread is interrupted but, being a daemon, can never keep the application alive.
+ */
+public class CertificateDiscoveryService {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 15_000;
+    private static final Log log = LogFactory.getLog(CertificateDiscoveryService.class);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final long timeoutMillis;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "certificate-discovery-" + THREAD_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CertificateDiscoveryService() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public CertificateDiscoveryService(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Starts probing all sources. Listener callbacks come from a background thread, one at a time;
+     * {@link Listener#onFinished()} is always called last. Cancelling the returned future stops the discovery
+     * (results still in flight are dropped).
+     */
+    public Future<?> discover(List<Source> sources, Listener listener) {
+        return executor.submit(() -> coordinate(sources, listener));
+    }
+
+    private void coordinate(List<Source> sources, Listener listener) {
+        CompletionService<List<KeystoreAndCertificateInfo>> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<List<KeystoreAndCertificateInfo>>, Source> pending = new HashMap<>();
+        for (Source source : sources) {
+            pending.put(completion.submit(source.loader), source);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (!pending.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                Future<List<KeystoreAndCertificateInfo>> done =
+                        remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (done == null) break; // deadline reached
+
+                Source source = pending.remove(done);
+                try {
+                    List<KeystoreAndCertificateInfo> found = done.get();
+                    listener.onCertificates(source, found != null ? found : Collections.emptyList());
+                } catch (ExecutionException e) {
+                    log.warn("Certificate source '" + source.name + "' failed", e.getCause());
+                    listener.onSourceFailed(source, e.getCause());
+                }
+            }
+            for (Map.Entry<Future<List<KeystoreAndCertificateInfo>>, Source> entry : pending.entrySet()) {
+                entry.getKey().cancel(true);
+                Source source = entry.getValue();
+                log.warn("Certificate source '" + source.name + "' did not answer within " + timeoutMillis + " ms");
+                listener.onSourceFailed(source, new TimeoutException("No answer within " + timeoutMillis / 1000 + " s"));
+            }
+        } catch (InterruptedException e) {
+            // Discovery cancelled by the caller
+            pending.keySet().forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+        } finally {
+            listener.onFinished();
+        }
+    }
+
+    public interface Listener {
+        void onCertificates(Source source, List<KeystoreAndCertificateInfo> certificates);
+
+        void onSourceFailed(Source source, Throwable error);
+
+        void onFinished();
+    }
+
+    /**
+     * One independently probed certificate source.
+     */
+    public static final class Source {
+        private final String key;
+        private final String name;
+        private final Callable<List<KeystoreAndCertificateInfo>> loader;
+
+        /**
+         * @param key  stable identifier of the source (e.g. the PKCS#11 library path)
+         * @param name short name shown to the user
+         */
+        public Source(String key, String name, Callable<List<KeystoreAndCertificateInfo>> loader) {
+            this.key = key;
+            this.name = name;
+            this.loader = loader;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
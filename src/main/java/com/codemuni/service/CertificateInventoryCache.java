@@ -0,0 +1,178 @@
+package com.codemuni.service;
+
+import com.codemuni.model.KeystoreAndCertificateInfo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * On-disk inventory of the certificates last seen in each certificate source (Windows store, PKCS#11 library).
+ * <p>
+ * The certificate picker shows {@link #cached(String)} immediately, then each source is re-probed through
+ * {@link #load(String, String, Callable)}: when the source's cheap stamp (e.g. library mtime + token
+ * fingerprints) matches the stored one, the stored certificates are returned without searching token objects
+ * or parsing anything from the device; otherwise the source is enumerated and the inventory updated.
+ * Entries are re-enumerated at least every {@link #MAX_AGE_MILLIS} regardless of the stamp.
+ */
+public class CertificateInventoryCache {
+
+    static final long MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+    private static final Log log = LogFactory.getLog(CertificateInventoryCache.class);
+    private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+    private final Path file;
+    private Inventory inventory;
+
+    public CertificateInventoryCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Last known certificates of a source, without any validation; empty if the source was never seen.
+     */
+    public synchronized List<KeystoreAndCertificateInfo> cached(String sourceKey) {
+        SourceEntry entry = inventory().sources.get(sourceKey);
+        return entry != null ? entry.toCertificates() : Collections.emptyList();
+    }
+
+    /**
+     * Certificates of a source: from the inventory if {@code stamp} is unchanged and the entry is recent enough,
+     * otherwise from {@code loader}, whose result then replaces the entry. A null stamp always calls the loader.
+     */
+    public List<KeystoreAndCertificateInfo> load(String sourceKey, String stamp,
+                                                 Callable<List<KeystoreAndCertificateInfo>> loader) throws Exception {
+        synchronized (this) {
+            SourceEntry entry = inventory().sources.get(sourceKey);
+            if (entry != null && stamp != null && stamp.equals(entry.stamp)
+                    && System.currentTimeMillis() - entry.refreshedAt < MAX_AGE_MILLIS) {
+                return entry.toCertificates();
+            }
+        }
+
+        // Enumerated outside the lock: other sources must not wait for a slow device.
+        List<KeystoreAndCertificateInfo> certificates = loader.call();
+        update(sourceKey, stamp, certificates);
+        return certificates;
+    }
+
+    private synchronized void update(String sourceKey, String stamp, List<KeystoreAndCertificateInfo> certificates) {
+        SourceEntry entry = new SourceEntry();
+        entry.stamp = stamp;
+        entry.refreshedAt = System.currentTimeMillis();
+        for (KeystoreAndCertificateInfo info : certificates) {
+            try {
+                entry.certificates.add(CertificateEntry.of(info));
+            } catch (CertificateException e) {
+                log.warn("Not caching unencodable certificate " + info + ": " + e.getMessage());
+            }
+        }
+        inventory().sources.put(sourceKey, entry);
+        write();
+    }
+
+    private Inventory inventory() {
+        if (inventory == null) {
+            inventory = read();
+        }
+        return inventory;
+    }
+
+    private Inventory read() {
+        if (!Files.isRegularFile(file)) return new Inventory();
+        try {
+            return mapper.readValue(file.toFile(), Inventory.class);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable certificate inventory " + file + ": " + e.getMessage());
+            return new Inventory();
+        }
+    }
+
+    private void write() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                mapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), inventory);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write certificate inventory " + file + ": " + e.getMessage());
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Inventory {
+        @JsonProperty("SOURCES")
+        public Map<String, SourceEntry> sources = new LinkedHashMap<>();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SourceEntry {
+        @JsonProperty("STAMP")
+        public String stamp;
+
+        @JsonProperty("REFRESHED_AT")
+        public long refreshedAt;
+
+        @JsonProperty("CERTIFICATES")
+        public List<CertificateEntry> certificates = new ArrayList<>();
+
+        List<KeystoreAndCertificateInfo> toCertificates() {
+            List<KeystoreAndCertificateInfo> result = new ArrayList<>(certificates.size());
+            for (CertificateEntry entry : certificates) {
+                try {
+                    result.add(entry.toInfo());
+                } catch (CertificateException | IllegalArgumentException e) {
+                    log.warn("Skipping unreadable cached certificate: " + e.getMessage());
+                }
+            }
+            return result;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CertificateEntry {
+        @JsonProperty("KEYSTORE")
+        public String keystoreName;
+
+        @JsonProperty("TOKEN_SERIAL")
+        public String tokenSerial;
+
+        @JsonProperty("PKCS11_PATH")
+        public String pkcs11Path;
+
+        @JsonProperty("DER")
+        public String der; // Base64
+
+        static CertificateEntry of(KeystoreAndCertificateInfo info) throws CertificateException {
+            CertificateEntry entry = new CertificateEntry();
+            entry.keystoreName = info.getKeystoreName();
+            entry.tokenSerial = info.getTokenSerial();
+            entry.pkcs11Path = info.getPkcs11Path();
+            entry.der = Base64.getEncoder().encodeToString(info.getCertificate().getEncoded());
+            return entry;
+        }
+
+        KeystoreAndCertificateInfo toInfo() throws CertificateException {
+            X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(der)));
+            return new KeystoreAndCertificateInfo(certificate, keystoreName, tokenSerial, pkcs11Path);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.codemuni.service;
+
+import com.codemuni.core.signer.LtvAugmenter;
+import com.codemuni.core.signer.PdfReaderFactory;
+import com.codemuni.exceptions.SigningProcessException;
+import com.codemuni.model.BatchSigningResult;
+import com.codemuni.model.BatchSigningResult.FileResult;
+import com.codemuni.model.PdfReadMode;
+import com.itextpdf.text.pdf.security.TSAClient;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless bulk pass that adds LTV data (DSS) and, with a TSA client, a document timestamp to already signed PDFs.
+ * <p>
+ * Runs separately from signing: no key or token session is involved, so slow OCSP/CRL/TSA round trips never hold
+ * one, and the pass can be repeated later to re-timestamp an archive. Documents are processed on a bounded worker
+ * pool; revocation data shared by the documents is fetched once through the OCSP and CRL caches.
+ * Failures are collected per file in {@link BatchSigningResult}.
+ */
+public class LtvAugmentService {
+
+    private static final Log log = LogFactory.getLog(LtvAugmentService.class);
+
+    private final LtvAugmenter augmenter;
+    private final int workerCount;
+    private String pdfPassword;
+    private PdfReadMode readMode = PdfReadMode.AUTO;
+
+    /**
+     * @param tsaClient   timestamp client for the document timestamps, or null to add the DSS only
+     * @param workerCount maximum number of documents processed concurrently; they mostly wait on the network
+     */
+    public LtvAugmentService(TSAClient tsaClient, int workerCount) {
+        this.augmenter = new LtvAugmenter(tsaClient);
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    public LtvAugmentService(TSAClient tsaClient) {
+        this(tsaClient, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public void setPdfPassword(String pdfPassword) {
+        this.pdfPassword = pdfPassword;
+    }
+
+    public void setReadMode(PdfReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    /**
+     * Augments every PDF directly inside {@code inputDir} and writes the results with the same file name to {@code outputDir}.
+     */
+    public BatchSigningResult augmentDirectory(Path inputDir, Path outputDir) throws IOException {
+        if (!Files.isDirectory(inputDir)) {
+            throw new IOException("Input is not a directory: " + inputDir);
+        }
+        if (inputDir.toAbsolutePath().normalize().equals(outputDir.toAbsolutePath().normalize())) {
+            throw new IOException("Output directory must differ from input directory.");
+        }
+        return augmentFiles(BatchSigningService.listPdfFiles(inputDir), outputDir);
+    }
+
+    public BatchSigningResult augmentFiles(List<Path> inputs, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+
+        BatchSigningResult result = new BatchSigningResult();
+        result.markStarted();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "ltv-augment-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<FileResult> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            for (Path input : inputs) {
+                Path output = outputDir.resolve(input.getFileName().toString());
+                completionService.submit(() -> augmentOne(input, output));
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                FileResult fileResult = completionService.take().get();
+                result.add(fileResult);
+                if (fileResult.isSuccess()) {
+                    log.info("Augmented " + fileResult.getInput() + " in " + fileResult.getDurationMillis() + " ms");
+                } else {
+                    log.warn("Failed to augment " + fileResult.getInput() + ": " + fileResult.getError().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("LTV augmentation interrupted; " + result.getTotalCount() + " of " + inputs.size() + " files processed.");
+        } catch (ExecutionException e) {
+            // augmentOne never throws; treat anything here as a bug in the engine itself
+            throw new SigningProcessException("LTV augmentation worker failed unexpectedly", e);
+        } finally {
+            executor.shutdownNow();
+            result.markFinished();
+        }
+
+        log.info(result.toString());
+        return result;
+    }
+
+    private FileResult augmentOne(Path input, Path output) {
+        long start = System.nanoTime();
+        try {
+            augmenter.augment(PdfReaderFactory.open(input.toFile(), pdfPassword, readMode), output);
+            return new FileResult(input, output, elapsedMillis(start), null);
+        } catch (Exception e) {
+            return new FileResult(input, null, elapsedMillis(start), e);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -1,16 +1,21 @@
 package com.codemuni.service;
 
-import com.codemuni.config.ConfigManager;
 import com.codemuni.core.keyStoresProvider.KeyStoreProvider;
 import com.codemuni.core.keyStoresProvider.PKCS11KeyStoreProvider;
 import com.codemuni.core.signer.AppearanceOptions;
 import com.codemuni.core.signer.CustomTSAClientBouncyCastle;
+import com.codemuni.core.signer.FailoverTSAClient;
+import com.codemuni.core.signer.PdfReaderFactory;
 import com.codemuni.core.signer.Signer;
+import com.codemuni.core.signer.SigningProgressListener;
 import com.codemuni.exceptions.SigningProcessException;
 import com.codemuni.exceptions.TSAConfigurationException;
+import com.codemuni.exceptions.UserCancelledOperationException;
 import com.codemuni.exceptions.UserCancelledPasswordEntryException;
 import com.codemuni.gui.DialogUtils;
+import com.codemuni.gui.SigningProgressDialog;
 import com.codemuni.gui.pdfHandler.PdfViewerMain;
+import com.codemuni.model.PdfReadMode;
 import com.itextpdf.text.pdf.PdfReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -18,9 +23,8 @@ import org.apache.commons.logging.LogFactory;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Base64;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class PdfSignerService {
@@ -30,6 +34,7 @@ public class PdfSignerService {
     private File selectedFile;
     private String pdfPassword;
     private KeyStoreProvider provider;
+    private PdfReadMode readMode = PdfReadMode.AUTO;
 
     public PdfSignerService() {
     }
@@ -55,6 +60,10 @@ public class PdfSignerService {
         this.pdfPassword = pdfPassword;
     }
 
+    public void setReadMode(PdfReadMode readMode) {
+        this.readMode = readMode;
+    }
+
     public void setSelectedFile(File selectedFile) {
         this.selectedFile = selectedFile;
     }
@@ -66,11 +75,7 @@ public class PdfSignerService {
 
     private PdfReader openPdfReader(File file, String password) {
         try {
-            if (password == null || password.isEmpty()) {
-                return new PdfReader(file.getAbsolutePath());
-            } else {
-                return new PdfReader(file.getAbsolutePath(), password.getBytes());
-            }
+            return PdfReaderFactory.open(file, password, readMode);
         } catch (IOException e) {
             log.error("Failed to open PDF file:::::::", e);
             return null;
@@ -81,16 +86,15 @@ public class PdfSignerService {
         try {
 
             CustomTSAClientBouncyCastle tsaClient = getTsaClient(appearanceOptions);
-            String signedBase64 = new Signer().sign(reader, provider, appearanceOptions, tsaClient);
-            byte[] signedBytes = Base64.getDecoder().decode(signedBase64);
 
+            // Destination is chosen up front so the signed PDF can be streamed straight to disk.
             File saveFile = showSaveFileDialog();
             if (saveFile == null) {
-                System.out.println("User cancelled file saving.");
+                log.info("User cancelled file saving.");
                 return;
             }
 
-            Files.write(saveFile.toPath(), signedBytes);
+            signInBackground(reader, provider, appearanceOptions, tsaClient, saveFile);
 
             // Render the signed PDF after 1 second delay
             if (saveFile.exists() && saveFile.length() > 0) {
@@ -102,14 +106,59 @@ public class PdfSignerService {
             handleSigningException(e, provider);
         } finally {
             reader.close();
+            // The token stays logged in for the next document (see PKCS11SessionManager).
             if (provider instanceof PKCS11KeyStoreProvider) {
-                ((PKCS11KeyStoreProvider) provider).reset();
+                ((PKCS11KeyStoreProvider) provider).release();
             }
         }
     }
 
+    /**
+     * Runs the signature on a worker thread behind a modal {@link SigningProgressDialog}, so the EDT keeps
+     * painting while CRL/OCSP/TSA requests and the write are in progress. Returns once the worker is done;
+     * its failure (including cancellation) is rethrown here.
+     */
+    private void signInBackground(PdfReader reader, KeyStoreProvider provider, AppearanceOptions appearanceOptions,
+                                  CustomTSAClientBouncyCastle tsaClient, File saveFile) throws Exception {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            new Signer().sign(readerSource(reader), provider, appearanceOptions, tsaClient, saveFile.toPath(), SigningProgressListener.NONE);
+            return;
+        }
+
+        SigningProgressDialog progressDialog = new SigningProgressDialog(PdfViewerMain.INSTANCE);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                new Signer().sign(readerSource(reader), provider, appearanceOptions, tsaClient, saveFile.toPath(), progressDialog);
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                SwingUtilities.invokeLater(progressDialog::dispose);
+            }
+        }, "pdf-signing");
+        worker.start();
+        progressDialog.setVisible(true); // modal; closed by the worker when it is done
+
+        Throwable t = failure.get();
+        if (t instanceof Exception) throw (Exception) t;
+        if (t instanceof Error) throw (Error) t;
+    }
+
+    /**
+     * Hands the signer the already opened reader first, and a freshly opened one should it have to sign
+     * again with a larger signature container.
+     */
+    private Callable<PdfReader> readerSource(PdfReader opened) {
+        AtomicReference<PdfReader> pending = new AtomicReference<>(opened);
+        return () -> {
+            PdfReader reader = pending.getAndSet(null);
+            return reader != null ? reader : PdfReaderFactory.open(selectedFile, pdfPassword, readMode);
+        };
+    }
+
     private void handleSigningException(Exception e, KeyStoreProvider provider) {
-        if (provider instanceof PKCS11KeyStoreProvider) {
+        // Only a failing token invalidates its session; cancelled dialogs or TSA errors keep it.
+        if (provider instanceof PKCS11KeyStoreProvider && PKCS11KeyStoreProvider.isTokenFailure(e)) {
             ((PKCS11KeyStoreProvider) provider).reset();
         }
 
@@ -118,6 +167,11 @@ public class PdfSignerService {
             return;
         }
 
+        if (e instanceof UserCancelledOperationException) {
+            log.info(e.getMessage());
+            return;
+        }
+
         if (e instanceof TSAConfigurationException) {
             String htmlMessage = "<html><body>"
                     + "<div style='color:#ff5555; font-weight:bold;'>Timestamp Configuration Required</div>"
@@ -187,13 +241,6 @@ public class PdfSignerService {
 
     private CustomTSAClientBouncyCastle getTsaClient(AppearanceOptions appearanceOptions) {
         if (!appearanceOptions.isTimestampEnabled()) return null;
-        Map<String, String> tsaConfig = ConfigManager.getTimestampServer();
-        return new CustomTSAClientBouncyCastle(
-                tsaConfig.get("url"),
-                tsaConfig.getOrDefault("username", null),
-                tsaConfig.getOrDefault("password", null),
-                8192,
-                "SHA-256"
-        );
+        return FailoverTSAClient.shared();
     }
 }
@@ -22,6 +22,14 @@ public class AppConstants {
     public static final Path CONFIG_FILE_PATH = CONFIG_DIR_PATH.resolve("config.yml");
     public static final String CONFIG_FILE = CONFIG_FILE_PATH.toString();
     public static final String CONFIG_DIR = CONFIG_DIR_PATH.toString();
+    // Page thumbnails keyed by document content hash: ~/.eMark/thumbnails/
+    public static final Path THUMBNAIL_CACHE_DIR_PATH = CONFIG_DIR_PATH.resolve("thumbnails");
+    // Last known certificates per keystore/token, shown while the stores are re-probed
+    public static final Path CERTIFICATE_INVENTORY_FILE_PATH = CONFIG_DIR_PATH.resolve("certificate-inventory.yml");
+    // OCSP responses of signer certificates, kept until their nextUpdate: ~/.eMark/ocsp-cache/
+    public static final Path OCSP_CACHE_DIR_PATH = CONFIG_DIR_PATH.resolve("ocsp-cache");
+    // Downloaded CRLs with their validators, refreshed by nextUpdate and conditional GET: ~/.eMark/crl-cache/
+    public static final Path CRL_CACHE_DIR_PATH = CONFIG_DIR_PATH.resolve("crl-cache");
 
 
     // Store names
@@ -0,0 +1,181 @@
+package com.codemuni.core.signer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cmp.PKIFailureInfo;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TSPAlgorithms;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponseGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RFC 3161 time-stamp server on localhost with a throwaway self-signed TSA certificate, for exercising
+ * {@link FailoverTSAClient} and the timestamping paths without a real TSA. Kept with the test sources; it does not
+ * ship in the application jar.
+ * <p>
+ * Latency and the kind of answer can be changed while it runs, so failover and hedging can be provoked:
+ * {@link Behaviour#REJECT} answers HTTP 200 with a rejection status, {@link Behaviour#GARBAGE} answers HTTP 200
+ * with a body that is no time-stamp response, {@link Behaviour#HTTP_ERROR} answers HTTP 503.
+ * <p>
+ * Standalone, after {@code mvn test-compile}: {@code java -cp target/classes:target/test-classes:<dependencies>
+ * com.codemuni.core.signer.LocalTimestampServer [port]}, then configure the printed URL as timestamp server.
+ */
+public final class LocalTimestampServer implements AutoCloseable {
+
+    public enum Behaviour {GRANT, REJECT, GARBAGE, HTTP_ERROR}
+
+    private final HttpServer server;
+    private final TimeStampTokenGenerator tokenGenerator;
+    private final AtomicLong serial = new AtomicLong(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Behaviour behaviour = Behaviour.GRANT;
+    private volatile long delayMillis;
+
+    /**
+     * Starts the server on {@code port}, or on a free port if it is 0.
+     */
+    public LocalTimestampServer(int port) throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        X509Certificate certificate = selfSignedTsaCertificate(keyPair);
+
+        tokenGenerator = new TimeStampTokenGenerator(
+                new JcaDigestCalculatorProviderBuilder().build().get(new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)),
+                new JcaSimpleSignerInfoGeneratorBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                        .build("SHA256withRSA", keyPair.getPrivate(), certificate),
+                new ASN1ObjectIdentifier("1.2.3.4.1"));
+        tokenGenerator.addCertificates(new JcaCertStore(Collections.singletonList(certificate)));
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "local-tsa");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalTimestampServer server = new LocalTimestampServer(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+        System.out.println("Local time-stamp server listening on " + server.getUrl() + " (Ctrl+C to stop)");
+        Thread.currentThread().join();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void setBehaviour(Behaviour behaviour) {
+        this.behaviour = behaviour;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Requests received so far, answered or not.
+     */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            byte[] body = readAll(exchange.getRequestBody());
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+
+            byte[] response;
+            // A response generator accumulates status strings and keeps the failure info: one per response
+            TimeStampResponseGenerator generator = new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+            switch (behaviour) {
+                case HTTP_ERROR:
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                case GARBAGE:
+                    response = "not a time-stamp response".getBytes(StandardCharsets.US_ASCII);
+                    break;
+                case REJECT:
+                    response = generator.generateFailResponse(2, PKIFailureInfo.systemFailure, "rejected on purpose")
+                            .getEncoded();
+                    break;
+                default:
+                    synchronized (tokenGenerator) {
+                        response = generator.generate(new TimeStampRequest(body),
+                                BigInteger.valueOf(serial.getAndIncrement()), new Date()).getEncoded();
+                    }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/timestamp-reply");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static X509Certificate selfSignedTsaCertificate(KeyPair keyPair) throws Exception {
+        X500Name name = new X500Name("CN=eMark Local Test TSA");
+        long now = System.currentTimeMillis();
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, BigInteger.valueOf(now),
+                new Date(now - 24L * 60 * 60 * 1000), new Date(now + 365L * 24 * 60 * 60 * 1000), name, keyPair.getPublic());
+        builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+        return new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
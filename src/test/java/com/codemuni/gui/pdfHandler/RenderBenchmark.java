@@ -0,0 +1,58 @@
+package com.codemuni.gui.pdfHandler;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders every page of a PDF with 1, 2, 4 and 8 threads and prints the wall time of each run.
+ * <p>
+ * Development tool, kept with the test sources so it does not ship in the application jar. Usage, after
+ * {@code mvn test-compile}: {@code java -cp target/classes:target/test-classes:<dependencies>
+ * com.codemuni.gui.pdfHandler.RenderBenchmark <file.pdf> [dpi] [password]}
+ */
+public final class RenderBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    private RenderBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: RenderBenchmark <file.pdf> [dpi] [password]");
+            System.exit(2);
+        }
+        File file = new File(args[0]);
+        float dpi = args.length > 1 ? Float.parseFloat(args[1]) : PdfRendererService.RENDER_DPI;
+        String password = args.length > 2 ? args[2] : null;
+
+        int pages;
+        try (PDDocument document = PDDocument.load(file, password == null ? "" : password)) {
+            pages = document.getNumberOfPages();
+        }
+        // Warm-up (class loading, font cache, JIT) so the single-threaded run is not penalised
+        try (ParallelPageRenderer warmUp = new ParallelPageRenderer(file, password, 1)) {
+            warmUp.renderRange(0, Math.min(pages, 3), dpi, (i, image) -> { });
+        }
+
+        System.out.printf("%s: %d pages at %.0f DPI, %d cores%n",
+                file.getName(), pages, dpi, Runtime.getRuntime().availableProcessors());
+
+        long baseline = 0;
+        for (int threads : THREAD_COUNTS) {
+            AtomicLong pixels = new AtomicLong();
+            long start = System.nanoTime();
+            try (ParallelPageRenderer renderer = new ParallelPageRenderer(file, password, threads)) {
+                renderer.renderRange(0, pages, dpi,
+                        (i, image) -> pixels.addAndGet((long) image.getWidth() * image.getHeight()));
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (threads == 1) baseline = millis;
+            System.out.printf("threads=%d  time=%d ms  pages/s=%.1f  speedup=%.2fx  pixels=%d%n",
+                    threads, millis, pages * 1000.0 / Math.max(1, millis),
+                    baseline / (double) Math.max(1, millis), pixels.get());
+        }
+    }
+}